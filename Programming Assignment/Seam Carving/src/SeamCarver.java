@@ -5,47 +5,186 @@
 
 import edu.princeton.cs.algs4.Picture;
 import java.lang.IllegalArgumentException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+/**
+ * Pixels and energies live in flat row-major buffers: pixel (x, y) is at
+ * index y * stride + x. Rows are contiguous for the vertical seam search, and
+ * the horizontal search steps down one column at a time, reusing the cache
+ * lines the previous column brought in.
+ * The buffers keep the original picture's size; removing a seam shifts pixels
+ * in place and shrinks the logical width or height, never the stride. Only
+ * inserting seams moves the picture to new, larger buffers.
+ * Energies are computed a row at a time from integer channel differences.
+ * Pictures of at least PARALLEL_PIXELS pixels build the energy map in row bands
+ * and run the seam search in column chunks on the common ForkJoinPool.
+ */
 public class SeamCarver {
     private static final boolean HORIZONTAL = true;
     private static final boolean VERTICAL = false;
-    private double[][] energy;
-    private int[][] color;
+    private static final double BORDER_ENERGY = 1000;
+    // smallest picture whose energy map and seam search are split across threads
+    private static final int PARALLEL_PIXELS = 1 << 20;
+    // rows per energy task
+    private static final int BAND_ROWS = 64;
+    // lines a seam search chunk advances between joins, and the narrowest chunk
+    private static final int BLOCK_LINES = 32;
+    private static final int MIN_CHUNK = 512;
+    // an approximate pass removes at most one seam per SEAM_SPACING pixels of a line,
+    // trying up to CANDIDATES_PER_SEAM of the cheapest seam ends for each
+    private static final int SEAM_SPACING = 32;
+    private static final int CANDIDATES_PER_SEAM = 8;
+    // if set, energy holds squared dual gradients and seams minimize their sum
+    private final boolean squaredEnergy;
+    private double[] energy;
+    private int[] color;
+    private int stride;
     private int width;
     private int height;
+    // seam search tables, laid out like energy and allocated by the first search:
+    // per pixel, the cost of the cheapest path into it and the offset (-1, 0 or +1)
+    // of its predecessor on that path
+    private double[] cost;
+    private byte[] step;
+    // are the tables up to date for seams in costDirection?
+    private boolean costsValid;
+    private boolean costDirection;
+    // greedy-order carving only: the other direction's tables, set aside by swapTables
+    private double[] spareCost;
+    private byte[] spareStep;
+    private boolean spareValid;
+    private boolean spareDirection;
+    // cost of the seam findSeam returned last
+    private double seamCost;
+    // approximate removal: per pixel, the id of the seam that claimed it, and the next id
+    private int[] owner;
+    private int nextSeamId = 1;
+    // approximate removal: the cheapest seam ends of a pass, reused across passes
+    private int[] ends;
+    // in the scratch copy that finds seams to insert: per pixel, its column (vertical
+    // seams) or row (horizontal seams) in the picture being enlarged; null otherwise
+    private int[] origin;
 
     /**
      * create a seam carver object based on the given picture.
      */
     public SeamCarver(Picture picture) {
+        this(picture, false);
+    }
+
+    /**
+     * seam carver that, if squaredEnergy is set, keeps squared dual-gradient energies:
+     * no square root per pixel, and seams minimize the sum of squared gradients
+     * (which favours different seams than the sum of gradients).
+     * energy(x, y) still returns the dual-gradient energy, taking the root on request.
+     */
+    public SeamCarver(Picture picture, boolean squaredEnergy) {
         if (picture == null) {
             throw new IllegalArgumentException();
         }
+        this.squaredEnergy = squaredEnergy;
         width = picture.width();
         height = picture.height();
-        color = new int[width][height];
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                color[x][y] = picture.getRGB(x, y);
+        stride = width;
+        color = new int[width * height];
+        energy = new double[width * height];
+        if (!parallel(width * height)) {
+            copyRows(picture, 0, height);
+        } else {
+            // energies read the rows above and below, so every pixel is copied first
+            ForkJoinPool.commonPool().invoke(new RowBand(picture, 0, height));
+        }
+        computeAllEnergies();
+    }
+
+    /**
+     * scratch copy of from's pixels and energies, remembering where each pixel
+     * came from across seams in direction.
+     */
+    private SeamCarver(SeamCarver from, boolean direction) {
+        squaredEnergy = from.squaredEnergy;
+        width = from.width;
+        height = from.height;
+        stride = from.stride;
+        color = from.color.clone();
+        energy = from.energy.clone();
+        origin = new int[color.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                origin[y * stride + x] = direction == VERTICAL ? x : y;
             }
         }
+    }
 
-        energy = new double[width][height];
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                energy[x][y] = pixelEnergy(x, y);
+    /**
+     * Rows from .. to - 1: copies their pixels out of picture, or, if picture is null,
+     * computes their energies. Splits into bands of BAND_ROWS rows.
+     */
+    private final class RowBand extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final transient Picture picture;
+        private final int from;
+        private final int to;
+
+        RowBand(Picture picture, int from, int to) {
+            this.picture = picture;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > BAND_ROWS) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RowBand(picture, from, mid), new RowBand(picture, mid, to));
+            } else if (picture != null) {
+                copyRows(picture, from, to);
+            } else {
+                computeEnergyRows(from, to);
             }
         }
     }
 
+    /**
+     * is a picture of this many pixels worth splitting across the common pool?
+     */
+    private static boolean parallel(int pixels) {
+        return pixels >= PARALLEL_PIXELS && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
+    private void copyRows(Picture picture, int from, int to) {
+        for (int y = from; y < to; y++) {
+            for (int x = 0; x < width; x++) {
+                color[y * stride + x] = picture.getRGB(x, y);
+            }
+        }
+    }
+
+    private void computeAllEnergies() {
+        if (!parallel(width * height)) {
+            computeEnergyRows(0, height);
+        } else {
+            ForkJoinPool.commonPool().invoke(new RowBand(null, 0, height));
+        }
+    }
+
+    private void computeEnergyRows(int from, int to) {
+        for (int y = from; y < to; y++) {
+            computeEnergies(y, 0, width);
+        }
+    }
+
     /**
      * current picture.
      */
     public Picture picture() {
         Picture picture = new Picture(width, height);
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                picture.setRGB(x, y, color[x][y]);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                picture.setRGB(x, y, color[y * stride + x]);
             }
         }
         return picture;
@@ -72,195 +211,798 @@ public class SeamCarver {
         if (!isValid(x, y)) {
             throw new IllegalArgumentException();
         }
-        return energy[x][y];
+        double e = energy[y * stride + x];
+        return squaredEnergy ? Math.sqrt(e) : e;
     }
 
     /**
      * sequence of indices for Vertical seam.
      */
     public int[] findVerticalSeam() {
-        double[][] distTo = new double[width][height];
-        int[][] edgeTo = new int[width][height];
-        int[] verticalSeam = new int[height];
-        int seamEnd = 0;
+        return findSeam(VERTICAL);
+    }
 
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                if (y == 0) {
-                    distTo[x][y] = 1000;
-                } else {
-                    distTo[x][y] = Double.POSITIVE_INFINITY;
-                }
+    /**
+     * sequence of indices for horizontal seam.
+     */
+    public int[] findHorizontalSeam() {
+        return findSeam(HORIZONTAL);
+    }
+
+    /**
+     * remove vertical seam from current picture.
+     */
+    public void removeVerticalSeam(int[] seam) {
+        validateSeam(seam, height, width);
+        width = width - 1;
+        removeSeam(seam, VERTICAL);
+    }
+
+    /**
+     * remove horizontal seam from current picture.
+     */
+    public void removeHorizontalSeam(int[] seam) {
+        validateSeam(seam, width, height);
+        height = height - 1;
+        removeSeam(seam, HORIZONTAL);
+    }
+
+    /**
+     * remove k vertical seams, finding each one on the picture the previous left.
+     */
+    public void removeVerticalSeams(int k) {
+        removeVerticalSeams(k, false);
+    }
+
+    /**
+     * remove k vertical seams; if approximate is set, several non-crossing seams
+     * are taken from each search, which is faster but may pick costlier seams.
+     */
+    public void removeVerticalSeams(int k, boolean approximate) {
+        if (k < 0 || k > width - 1) {
+            throw new IllegalArgumentException();
+        }
+        removeSeams(k, VERTICAL, approximate);
+    }
+
+    /**
+     * remove k horizontal seams, finding each one on the picture the previous left.
+     */
+    public void removeHorizontalSeams(int k) {
+        removeHorizontalSeams(k, false);
+    }
+
+    /**
+     * remove k horizontal seams; if approximate is set, several non-crossing seams
+     * are taken from each search, which is faster but may pick costlier seams.
+     */
+    public void removeHorizontalSeams(int k, boolean approximate) {
+        if (k < 0 || k > height - 1) {
+            throw new IllegalArgumentException();
+        }
+        removeSeams(k, HORIZONTAL, approximate);
+    }
+
+    /**
+     * Widen the picture by k columns, 0 <= k <= width: the k vertical seams that
+     * removing k seams would take out are each doubled, into the averages of the
+     * seam pixel with its left and with its right neighbour.
+     */
+    public void insertVerticalSeams(int k) {
+        if (k < 0 || k > width) {
+            throw new IllegalArgumentException();
+        }
+        insertSeams(k, VERTICAL);
+    }
+
+    /**
+     * Heighten the picture by k rows, 0 <= k <= height: the k horizontal seams that
+     * removing k seams would take out are each doubled, into the averages of the
+     * seam pixel with its upper and with its lower neighbour.
+     */
+    public void insertHorizontalSeams(int k) {
+        if (k < 0 || k > height) {
+            throw new IllegalArgumentException();
+        }
+        insertSeams(k, HORIZONTAL);
+    }
+
+    /**
+     * shrink the picture to targetWidth by targetHeight, removing rows first and then columns.
+     */
+    public void carveTo(int targetWidth, int targetHeight) {
+        carveTo(targetWidth, targetHeight, false, false);
+    }
+
+    /**
+     * Shrink the picture to targetWidth by targetHeight. If greedyOrder is set, each
+     * step removes whichever of the cheapest vertical and horizontal seams costs less,
+     * rather than all rows and then all columns; this approximates the optimal order
+     * at the price of one full seam search per step and a second set of cost tables
+     * while it runs. approximate is as for removeVerticalSeams; a step then removes a
+     * batch of seams and costs two full searches, as a batch leaves no table current.
+     */
+    public void carveTo(int targetWidth, int targetHeight, boolean approximate, boolean greedyOrder) {
+        if (targetWidth < 1 || targetWidth > width || targetHeight < 1 || targetHeight > height) {
+            throw new IllegalArgumentException();
+        }
+        while (greedyOrder && width > targetWidth && height > targetHeight) {
+            // search the direction whose cost table is current first: its seam is only a
+            // backtrack away. Its table is then set aside rather than overwritten, so
+            // whichever direction wins, the removal finds the table it repairs.
+            boolean first = costsValid ? costDirection : VERTICAL;
+            int[] firstSeam = findSeam(first);
+            double firstCost = seamCost;
+            swapTables();
+            int[] secondSeam = findSeam(!first);
+            boolean direction = firstCost < seamCost || firstCost == seamCost && first == VERTICAL ? first : !first;
+            if (direction == first) {
+                swapTables();
+            }
+            // the table of the losing direction goes stale with the removal
+            spareValid = false;
+            if (approximate) {
+                int remaining = direction == VERTICAL ? width - targetWidth : height - targetHeight;
+                removeSeamBatch(remaining, direction);
+            } else {
+                shrink(direction);
+                removeSeam(direction == first ? firstSeam : secondSeam, direction);
             }
         }
+        spareCost = null;
+        spareStep = null;
+        removeSeams(height - targetHeight, HORIZONTAL, approximate);
+        removeSeams(width - targetWidth, VERTICAL, approximate);
+    }
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                relax(distTo, edgeTo, x, y, x - 1, y + 1, VERTICAL);
-                relax(distTo, edgeTo, x, y, x, y + 1, VERTICAL);
-                relax(distTo, edgeTo, x, y, x + 1, y + 1, VERTICAL);
+    /**
+     * exchange the cost tables with the spare ones.
+     */
+    private void swapTables() {
+        double[] c = cost;
+        cost = spareCost;
+        spareCost = c;
+        byte[] s = step;
+        step = spareStep;
+        spareStep = s;
+        boolean valid = costsValid;
+        costsValid = spareValid;
+        spareValid = valid;
+        boolean direction = costDirection;
+        costDirection = spareDirection;
+        spareDirection = direction;
+    }
+
+    /**
+     * The seam search for both directions. A seam crosses `lines` lines of `span`
+     * pixels each: rows of width pixels for a vertical seam, columns of height pixels
+     * for a horizontal one. Pixel j of line i is at energy index
+     * i * lineStride + j * pixelStride, so no transposed copy is needed.
+     * The cost tables are only rebuilt if the last search or removal was in the
+     * other direction; removals in this direction have already repaired them.
+     */
+    private int[] findSeam(boolean direction) {
+        int lines = direction == VERTICAL ? height : width;
+        int span = direction == VERTICAL ? width : height;
+        int lineStride = direction == VERTICAL ? stride : 1;
+        int pixelStride = direction == VERTICAL ? 1 : stride;
+        if (!costsValid || costDirection != direction) {
+            computeCosts(lines, span, lineStride, pixelStride);
+            costsValid = true;
+            costDirection = direction;
+        }
+
+        int[] seam = new int[lines];
+        int last = (lines - 1) * lineStride;
+        int seamEnd = 0;
+        for (int j = 1; j < span; j++) {
+            if (cost[last + seamEnd * pixelStride] > cost[last + j * pixelStride]) {
+                seamEnd = j;
             }
         }
+        seamCost = cost[last + seamEnd * pixelStride];
+        seam[lines - 1] = seamEnd;
+        for (int i = lines - 1; i > 0; i--) {
+            seam[i - 1] = seam[i] + step[i * lineStride + seam[i] * pixelStride];
+        }
+        return seam;
+    }
+
+    /**
+     * fill the cost and step tables for every pixel of every line.
+     */
+    private void computeCosts(int lines, int span, int lineStride, int pixelStride) {
+        if (cost == null) {
+            cost = new double[color.length];
+            step = new byte[color.length];
+        }
+        for (int j = 0; j < span; j++) {
+            cost[j * pixelStride] = energy[j * pixelStride];
+        }
 
-        for (int x = 0; x < width; x++) {
-            if (distTo[seamEnd][height - 1] > distTo[x][height - 1]) {
-                seamEnd = x;
+        if (!parallel(lines * span) || span < 2 * MIN_CHUNK) {
+            for (int i = 1; i < lines; i++) {
+                relaxLine(i, 0, span, span, lineStride, pixelStride,
+                        cost, (i - 1) * lineStride, cost, i * lineStride, pixelStride, true);
             }
+            return;
         }
-        verticalSeam[height - 1] = seamEnd;
+        int chunks = Math.min(span / MIN_CHUNK, 4 * ForkJoinPool.getCommonPoolParallelism());
+        double[][] scratch = new double[2 * chunks][];
+        for (int c = 0; c < chunks; c++) {
+            int chunk = span * (c + 1) / chunks - span * c / chunks;
+            scratch[2 * c] = new double[chunk + 2 * BLOCK_LINES];
+            scratch[2 * c + 1] = new double[chunk + 2 * BLOCK_LINES];
+        }
+        for (int i = 1; i < lines; i += BLOCK_LINES) {
+            ChunkTask[] tasks = new ChunkTask[chunks];
+            for (int c = 0; c < chunks; c++) {
+                tasks[c] = new ChunkTask(i, Math.min(lines, i + BLOCK_LINES), span * c / chunks,
+                        span * (c + 1) / chunks, span, lineStride, pixelStride,
+                        scratch[2 * c], scratch[2 * c + 1]);
+            }
+            ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
 
-        for (int y = height - 1; y > 0; y--) {
-            verticalSeam[y - 1] = edgeTo[verticalSeam[y]][y];
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
         }
-        return verticalSeam;
     }
 
     /**
-     * sequence of indices for horizontal seam.
+     * Cheapest path costs into pixels from .. to - 1 of line i. The cost of pixel j
+     * of line i - 1 is read from prev[prevOrigin + j * unit] and that of line i is
+     * written to cur[curOrigin + j * unit], so the same loop serves the cost table
+     * and a chunk's private rows.
+     * On ties the lowest-index predecessor wins, as in relaxing over increasing j.
+     * Steps are recorded only if record is set.
      */
-    public int[] findHorizontalSeam() {
-        double[][] distTo = new double[width][height];
-        int[][] edgeTo = new int[width][height];
-        int[] horizontalSeam = new int[width];
-        int seamEnd = 0;
+    private void relaxLine(int i, int from, int to, int span, int lineStride, int pixelStride,
+                           double[] prev, int prevOrigin, double[] cur, int curOrigin, int unit,
+                           boolean record) {
+        int k = i * lineStride + from * pixelStride;
+        int p = prevOrigin + from * unit;
+        int c = curOrigin + from * unit;
+        for (int j = from; j < to; j++, k += pixelStride, p += unit, c += unit) {
+            double e = energy[k];
+            double best = prev[p] + e;
+            byte dj = 0;
+            if (j > 0 && prev[p - unit] + e <= best) {
+                best = prev[p - unit] + e;
+                dj = -1;
+            }
+            if (j + 1 < span && prev[p + unit] + e < best) {
+                best = prev[p + unit] + e;
+                dj = 1;
+            }
+            cur[c] = best;
+            if (record) {
+                step[k] = dj;
+            }
+        }
+    }
+
+    /**
+     * Lines from .. to - 1 of the seam search for pixels lo .. hi - 1 of each line.
+     * The chunk starts from line from - 1 widened by one pixel per line on each side
+     * and narrows by one per line, so it never needs another chunk's results until
+     * the block ends; the overlap is computed twice but only the own range is stored.
+     */
+    private final class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        private final int lo;
+        private final int hi;
+        private final int span;
+        private final int lineStride;
+        private final int pixelStride;
+        private final double[] bufA;
+        private final double[] bufB;
+
+        ChunkTask(int from, int to, int lo, int hi, int span, int lineStride, int pixelStride,
+                  double[] bufA, double[] bufB) {
+            this.from = from;
+            this.to = to;
+            this.lo = lo;
+            this.hi = hi;
+            this.span = span;
+            this.lineStride = lineStride;
+            this.pixelStride = pixelStride;
+            this.bufA = bufA;
+            this.bufB = bufB;
+        }
 
-        for (int x = 0; x < width(); x++) {
+        @Override
+        protected void compute() {
+            int depth = to - from;
+            int base = Math.max(0, lo - depth);
+            int end = Math.min(span, hi + depth);
+            for (int j = base, k = (from - 1) * lineStride + base * pixelStride; j < end; j++, k += pixelStride) {
+                bufA[j - base] = cost[k];
+            }
+            double[] a = bufA;
+            double[] b = bufB;
+            for (int i = from; i < to; i++) {
+                int n = i - from + 1;
+                int left = base == 0 ? 0 : base + n;
+                int right = end == span ? span : end - n;
+                relaxLine(i, left, lo, span, lineStride, pixelStride, a, -base, b, -base, 1, false);
+                relaxLine(i, lo, hi, span, lineStride, pixelStride, a, -base, b, -base, 1, true);
+                relaxLine(i, hi, right, span, lineStride, pixelStride, a, -base, b, -base, 1, false);
+                for (int j = lo, k = i * lineStride + lo * pixelStride; j < hi; j++, k += pixelStride) {
+                    cost[k] = b[j - base];
+                }
+                double[] swap = a;
+                a = b;
+                b = swap;
+            }
+        }
+    }
+
+    /**
+     * Shift out a validated seam, the picture already having its new logical size,
+     * then recompute the energies on either side of it. Cost tables for seams in the
+     * same direction are shifted along and repaired; any others are dropped.
+     */
+    private void removeSeam(int[] seam, boolean direction) {
+        boolean repair = costsValid && costDirection == direction;
+        costsValid = false;
+        Object[] buffers = {color, energy, repair ? cost : null, repair ? step : null, origin};
+        if (direction == VERTICAL) {
+            // shift the rest of each row left in place; the stride stays as it was
             for (int y = 0; y < height; y++) {
-                if (x == 0) {
-                    distTo[x][y] = 1000;
-                } else {
-                    distTo[x][y] = Double.POSITIVE_INFINITY;
+                int from = y * stride + seam[y] + 1;
+                for (Object buffer : buffers) {
+                    if (buffer != null) {
+                        System.arraycopy(buffer, from, buffer, from - 1, width - seam[y]);
+                    }
+                }
+            }
+        } else {
+            // row by row, every run of columns whose seam is at or above y moves up by one
+            for (int y = 0; y < height; y++) {
+                int row = y * stride;
+                for (int x = 0; x < width; x++) {
+                    if (seam[x] > y) {
+                        continue;
+                    }
+                    int end = x + 1;
+                    while (end < width && seam[end] <= y) {
+                        end++;
+                    }
+                    for (Object buffer : buffers) {
+                        if (buffer != null) {
+                            System.arraycopy(buffer, row + stride + x, buffer, row + x, end - x);
+                        }
+                    }
+                    x = end;
                 }
             }
         }
 
-        for (int x = 0; x < width(); x++) {
-            for (int y = 0; y < height(); y++) {
-                relax(distTo, edgeTo, x, y, x + 1, y - 1, HORIZONTAL);
-                relax(distTo, edgeTo, x, y, x + 1, y, HORIZONTAL);
-                relax(distTo, edgeTo, x, y, x + 1, y + 1, HORIZONTAL);
+        int span = direction == VERTICAL ? width : height;
+        for (int i = 0; i < seam.length; i++) {
+            int from = Math.max(0, seam[i] - 1);
+            int to = Math.min(seam[i] + 1, span);
+            if (direction == VERTICAL) {
+                computeEnergies(i, from, to);
+            } else {
+                for (int y = from; y < to; y++) {
+                    computeEnergies(y, i, i + 1);
+                }
             }
         }
+        if (repair) {
+            repairCosts(seam, direction);
+            costsValid = true;
+        }
+    }
 
-        for (int y = 0; y < height; y++) {
-            if (distTo[width - 1][seamEnd] > distTo[width - 1][y]) {
-                seamEnd = y;
+    /**
+     * Bring the shifted cost tables up to date after removing seam, line by line.
+     * A pixel of line i can only change if its energy was recomputed, if its three
+     * predecessors are no longer the shifted versions of the old ones (both only
+     * next to seam[i - 1] and seam[i]), or if a predecessor's cost changed. Those
+     * pixels are relaxed again with the usual arithmetic; the pixels whose cost
+     * really changed widen the next line's range by one on each side, so the
+     * repaired cone stops growing where the new costs match the old.
+     */
+    private void repairCosts(int[] seam, boolean direction) {
+        int lines = direction == VERTICAL ? height : width;
+        int span = direction == VERTICAL ? width : height;
+        int lineStride = direction == VERTICAL ? stride : 1;
+        int pixelStride = direction == VERTICAL ? 1 : stride;
+        // pixels of the previous line whose cost changed, empty if changedLo > changedHi
+        int changedLo = 0;
+        int changedHi = -1;
+        for (int i = 0; i < lines; i++) {
+            int above = i == 0 ? seam[0] : seam[i - 1];
+            int lo = Math.min(seam[i], above) - 1;
+            int hi = Math.max(seam[i], above);
+            if (changedLo <= changedHi) {
+                lo = Math.min(lo, changedLo - 1);
+                hi = Math.max(hi, changedHi + 1);
+            }
+            lo = Math.max(lo, 0);
+            hi = Math.min(hi, span - 1);
+            changedLo = span;
+            changedHi = -1;
+            for (int j = lo, k = i * lineStride + lo * pixelStride; j <= hi; j++, k += pixelStride) {
+                double old = cost[k];
+                if (i == 0) {
+                    cost[k] = energy[k];
+                } else {
+                    relaxLine(i, j, j + 1, span, lineStride, pixelStride,
+                            cost, (i - 1) * lineStride, cost, i * lineStride, pixelStride, true);
+                }
+                if (cost[k] != old) {
+                    changedLo = Math.min(changedLo, j);
+                    changedHi = j;
+                }
             }
         }
+    }
 
-        horizontalSeam[width - 1] = seamEnd;
-        for (int x = width - 1; x > 0; x--) {
-            horizontalSeam[x - 1] = edgeTo[x][horizontalSeam[x]];
+    /**
+     * remove k validated seams in direction, one per search or, if approximate, in batches.
+     */
+    private void removeSeams(int k, boolean direction, boolean approximate) {
+        while (k > 0) {
+            if (approximate) {
+                k -= removeSeamBatch(k, direction);
+            } else {
+                int[] seam = findSeam(direction);
+                shrink(direction);
+                removeSeam(seam, direction);
+                k--;
+            }
         }
+    }
 
-        return horizontalSeam;
+    /**
+     * one pixel less across a seam in direction.
+     */
+    private void shrink(boolean direction) {
+        if (direction == VERTICAL) {
+            width--;
+        } else {
+            height--;
+        }
     }
 
     /**
-     * remove vertical seam from current picture.
+     * Remove up to k seams in direction found by one search, the first of them the
+     * cheapest seam, and return how many. Seam ends are tried from the cheapest up
+     * and traced back through the step table; a seam never shares a pixel with one
+     * already taken nor swaps places with one between two lines, so the taken seams
+     * keep their left-to-right order on every line. All of them are then squeezed
+     * out in a single sweep over the buffers.
      */
-    public void removeVerticalSeam(int[] seam) {
-        validateSeam(seam, height, width);
+    private int removeSeamBatch(int k, boolean direction) {
+        int lines = direction == VERTICAL ? height : width;
+        int span = direction == VERTICAL ? width : height;
+        int lineStride = direction == VERTICAL ? stride : 1;
+        int pixelStride = direction == VERTICAL ? 1 : stride;
+        if (!costsValid || costDirection != direction) {
+            computeCosts(lines, span, lineStride, pixelStride);
+            costsValid = true;
+            costDirection = direction;
+        }
+        if (owner == null) {
+            owner = new int[color.length];
+        }
 
-        width = width - 1;
-        int[][] newColor = new int[width][height];
-        double[][] newEnergy = new double[width][height];
-        for (int y = 0; y < height; y++) {
-            int sign = 0;
-            for (int x = 0; x < width; x++) {
-                if (x == seam[y]) {
-                    sign = 1;
+        int batch = Math.min(k, Math.max(1, span / SEAM_SPACING));
+        int last = (lines - 1) * lineStride;
+        int candidates = Math.min(span, batch * CANDIDATES_PER_SEAM);
+        cheapestEnds(candidates, span, last, pixelStride);
+        int firstId = nextSeamId;
+        int[][] seams = new int[batch][];
+        int found = 0;
+        for (int c = 0; c < candidates && found < batch; c++) {
+            int[] seam = traceSeam(ends[c], lines, span, lineStride, pixelStride, firstId);
+            if (seam != null) {
+                int id = nextSeamId++;
+                for (int i = 0; i < lines; i++) {
+                    owner[i * lineStride + seam[i] * pixelStride] = id;
                 }
-                newColor[x][y] = color[x + sign][y];
+                seams[found++] = seam;
             }
         }
-        color = newColor;
+        Arrays.sort(seams, 0, found, Comparator.comparingInt(seam -> seam[0]));
 
-        for (int y = 0; y < height; y++) {
-            int sign = 0;
-            for (int x = 0; x < width; x++) {
-                if (x == seam[y]) {
-                    sign = 1;
+        if (direction == VERTICAL) {
+            // per row, the pixels between two removed ones move left by the number removed so far
+            for (int y = 0; y < height; y++) {
+                int row = y * stride;
+                for (int t = 0; t < found; t++) {
+                    int from = row + seams[t][y] + 1;
+                    int to = row + (t + 1 < found ? seams[t + 1][y] : width);
+                    System.arraycopy(color, from, color, from - t - 1, to - from);
+                    System.arraycopy(energy, from, energy, from - t - 1, to - from);
                 }
-                if (x == seam[y] - 1 || x == seam[y]) {
-                    newEnergy[x][y] = pixelEnergy(x, y);
-                } else {
-                    newEnergy[x][y] = energy[x + sign][y];
+            }
+            width -= found;
+        } else {
+            // row by row, column x takes the pixel below it by the number of seams passed in x
+            height -= found;
+            int[] passed = new int[width];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    while (passed[x] < found && seams[passed[x]][x] <= y + passed[x]) {
+                        passed[x]++;
+                    }
+                    if (passed[x] > 0) {
+                        color[y * stride + x] = color[(y + passed[x]) * stride + x];
+                        energy[y * stride + x] = energy[(y + passed[x]) * stride + x];
+                    }
+                }
+            }
+        }
+        costsValid = false;
 
+        // energies are a function of the pixels alone, so recomputing next to where each
+        // seam was, in final coordinates, gives what removing them one by one would
+        span -= found;
+        for (int i = 0; i < lines; i++) {
+            for (int t = 0; t < found; t++) {
+                int at = seams[t][i] - t;
+                int from = Math.max(0, at - 1);
+                int to = Math.min(at + 1, span);
+                if (direction == VERTICAL) {
+                    computeEnergies(i, from, to);
+                } else {
+                    for (int y = from; y < to; y++) {
+                        computeEnergies(y, i, i + 1);
+                    }
                 }
             }
         }
+        return found;
+    }
 
-        energy = newEnergy;
+    /**
+     * Put the m cheapest of the span seam ends into ends[0, m), cheapest first, equal
+     * costs lowest end first as findSeam picks them. A max-heap of the m best so far
+     * makes one pass over the ends and is then heapsorted in place.
+     */
+    private void cheapestEnds(int m, int span, int last, int pixelStride) {
+        if (ends == null || ends.length < m) {
+            ends = new int[Math.max(m, span)];
+        }
+        for (int j = 0; j < span; j++) {
+            if (j < m) {
+                ends[j] = j;
+                for (int c = j; c > 0 && worseEnd(ends[c], ends[(c - 1) / 2], last, pixelStride); c = (c - 1) / 2) {
+                    swapEnds(c, (c - 1) / 2);
+                }
+            } else if (worseEnd(ends[0], j, last, pixelStride)) {
+                ends[0] = j;
+                siftDown(0, m, last, pixelStride);
+            }
+        }
+        for (int size = m - 1; size > 0; size--) {
+            swapEnds(0, size);
+            siftDown(0, size, last, pixelStride);
+        }
     }
 
     /**
-     * remove horizontal seam from current picture.
+     * does seam end a sort after seam end b?
      */
-    public void removeHorizontalSeam(int[] seam) {
-        validateSeam(seam, width, height);
+    private boolean worseEnd(int a, int b, int last, int pixelStride) {
+        double ca = cost[last + a * pixelStride];
+        double cb = cost[last + b * pixelStride];
+        return ca > cb || ca == cb && a > b;
+    }
 
-        height = height - 1;
-        int[][] newColor = new int[width][height];
-        double[][] newEnergy = new double[width][height];
-        for (int x = 0; x < width; x++) {
-            int sign = 0;
-            for (int y = 0; y < height; y++) {
-                if (y == seam[x]) {
-                    sign = 1;
+    private void siftDown(int c, int size, int last, int pixelStride) {
+        while (2 * c + 1 < size) {
+            int child = 2 * c + 1;
+            if (child + 1 < size && worseEnd(ends[child + 1], ends[child], last, pixelStride)) {
+                child++;
+            }
+            if (!worseEnd(ends[child], ends[c], last, pixelStride)) {
+                return;
+            }
+            swapEnds(c, child);
+            c = child;
+        }
+    }
+
+    private void swapEnds(int a, int b) {
+        int t = ends[a];
+        ends[a] = ends[b];
+        ends[b] = t;
+    }
+
+    /**
+     * The seam ending at pixel end of the last line, or null if it meets the seams
+     * claimed since firstId. Where the cheapest path runs into one of them, the
+     * seam turns to the cheapest of the other predecessors it may use instead.
+     */
+    private int[] traceSeam(int end, int lines, int span, int lineStride, int pixelStride, int firstId) {
+        if (owner[(lines - 1) * lineStride + end * pixelStride] >= firstId) {
+            return null;
+        }
+        int[] seam = new int[lines];
+        seam[lines - 1] = end;
+        for (int i = lines - 1, j = end; i > 0; i--) {
+            int up = j + step[i * lineStride + j * pixelStride];
+            if (blocked(i, j, up, lineStride, pixelStride, firstId)) {
+                up = -1;
+                for (int u = Math.max(0, j - 1); u <= Math.min(j + 1, span - 1); u++) {
+                    if (!blocked(i, j, u, lineStride, pixelStride, firstId)
+                            && (up == -1 || cost[(i - 1) * lineStride + u * pixelStride]
+                                < cost[(i - 1) * lineStride + up * pixelStride])) {
+                        up = u;
+                    }
+                }
+                if (up == -1) {
+                    return null;
                 }
-                newColor[x][y] = color[x][y + sign];
             }
+            seam[i - 1] = up;
+            j = up;
         }
-        color = newColor;
+        return seam;
+    }
 
-        for (int x = 0; x < width; x++) {
-            int sign = 0;
+    /**
+     * may a seam through pixel j of line i come from pixel up of line i - 1? Not if
+     * that pixel is claimed, or if a claimed seam runs from (i - 1, j) to (i, up),
+     * which this one would cross.
+     */
+    private boolean blocked(int i, int j, int up, int lineStride, int pixelStride, int firstId) {
+        if (owner[(i - 1) * lineStride + up * pixelStride] >= firstId) {
+            return true;
+        }
+        int across = owner[(i - 1) * lineStride + j * pixelStride];
+        return up != j && across >= firstId && across == owner[i * lineStride + up * pixelStride];
+    }
+
+    /**
+     * Insert k seams in direction. A scratch copy carves k seams one after another,
+     * so each seam is found on the picture the previous ones left, and marks their
+     * pixels at their original positions. The enlarged picture is then written to
+     * new buffers in one sweep and its energies computed afresh.
+     */
+    private void insertSeams(int k, boolean direction) {
+        if (k == 0) {
+            return;
+        }
+        int lineStride = direction == VERTICAL ? stride : 1;
+        int pixelStride = direction == VERTICAL ? 1 : stride;
+        boolean[] doubled = new boolean[color.length];
+        SeamCarver scratch = new SeamCarver(this, direction);
+        for (int t = 0; t < k; t++) {
+            int[] seam = scratch.findSeam(direction);
+            for (int i = 0; i < seam.length; i++) {
+                int j = scratch.origin[i * lineStride + seam[i] * pixelStride];
+                doubled[i * lineStride + j * pixelStride] = true;
+            }
+            // the last seam need not leave the scratch copy
+            if (t + 1 < k) {
+                scratch.shrink(direction);
+                scratch.removeSeam(seam, direction);
+            }
+        }
+
+        int newWidth = direction == VERTICAL ? width + k : width;
+        int newHeight = direction == VERTICAL ? height : height + k;
+        int[] enlarged = new int[newWidth * newHeight];
+        if (direction == VERTICAL) {
             for (int y = 0; y < height; y++) {
-                if (y == seam[x]) {
-                    sign = 1;
+                int row = y * stride;
+                for (int x = 0, out = y * newWidth; x < width; x++) {
+                    int i = row + x;
+                    if (doubled[i]) {
+                        enlarged[out++] = average(color[i], color[x > 0 ? i - 1 : i]);
+                        enlarged[out++] = average(color[i], color[x + 1 < width ? i + 1 : i]);
+                    } else {
+                        enlarged[out++] = color[i];
+                    }
                 }
-                if (y == seam[x] - 1 || y == seam[x]) {
-                    newEnergy[x][y] = pixelEnergy(x, y);
-                } else {
-                    newEnergy[x][y] = energy[x][y + sign];
+            }
+        } else {
+            // row by row; per column, the next source row and whether its second copy is due
+            int[] next = new int[width];
+            boolean[] second = new boolean[width];
+            for (int y = 0; y < newHeight; y++) {
+                for (int x = 0; x < width; x++) {
+                    int src = next[x];
+                    int i = src * stride + x;
+                    if (!doubled[i]) {
+                        enlarged[y * newWidth + x] = color[i];
+                        next[x]++;
+                    } else if (!second[x]) {
+                        enlarged[y * newWidth + x] = average(color[i], color[src > 0 ? i - stride : i]);
+                        second[x] = true;
+                    } else {
+                        enlarged[y * newWidth + x] = average(color[i], color[src + 1 < height ? i + stride : i]);
+                        second[x] = false;
+                        next[x]++;
+                    }
                 }
             }
         }
-        energy = newEnergy;
+
+        color = enlarged;
+        energy = new double[enlarged.length];
+        stride = newWidth;
+        width = newWidth;
+        height = newHeight;
+        cost = null;
+        step = null;
+        owner = null;
+        costsValid = false;
+        computeAllEnergies();
     }
 
-    private double pixelEnergy(int x, int y) {
-        if (x == 0 || x == width - 1 || y == 0 || y == height - 1) {
-            return 1000;
-        }
-        double total = 0;
-        int left = color[x - 1][y];
-        int right = color[x + 1][y];
-        int up = color[x][y - 1];
-        int down = color[x][y + 1];
-        total += Math.pow(getRed(left) - getRed(right), 2);
-        total += Math.pow(getGreen(left) - getGreen(right), 2);
-        total += Math.pow(getBlue(left) - getBlue(right), 2);
-        total += Math.pow(getRed(up) - getRed(down), 2);
-        total += Math.pow(getGreen(up) - getGreen(down), 2);
-        total += Math.pow(getBlue(up) - getBlue(down), 2);
-        return Math.sqrt(total);
+    /**
+     * channel-wise mean of two colors, rounded down.
+     */
+    private static int average(int a, int b) {
+        int r = (((a >> 16) & 0xFF) + ((b >> 16) & 0xFF)) >> 1;
+        int g = (((a >> 8) & 0xFF) + ((b >> 8) & 0xFF)) >> 1;
+        int bl = ((a & 0xFF) + (b & 0xFF)) >> 1;
+        return 0xFF000000 | (r << 16) | (g << 8) | bl;
     }
 
-    private void relax(double[][] distTo, int[][] edgeTo, int x, int y, int nextX, int nextY, boolean direction) {
-        if (isValid(nextX, nextY)) {
-            double total = distTo[x][y] + energy[nextX][nextY];
-            if (total < distTo[nextX][nextY]) {
-                if (direction == VERTICAL)
-                    edgeTo[nextX][nextY] = x;
-                else
-                    edgeTo[nextX][nextY] = y;
-                distTo[nextX][nextY] = total;
+    /**
+     * Energies of pixels from .. to - 1 of row y. The six channel differences are
+     * plain int arithmetic in one branch-free loop per mode, which the JIT can
+     * unroll and vectorize; the square root is skipped in squared mode.
+     */
+    private void computeEnergies(int y, int from, int to) {
+        int row = y * stride;
+        double border = squaredEnergy ? BORDER_ENERGY * BORDER_ENERGY : BORDER_ENERGY;
+        if (y == 0 || y == height - 1) {
+            for (int x = from; x < to; x++) {
+                energy[row + x] = border;
+            }
+            return;
+        }
+        if (from == 0) {
+            energy[row] = border;
+            from = 1;
+        }
+        if (to == width) {
+            energy[row + width - 1] = border;
+            to = width - 1;
+        }
+        if (squaredEnergy) {
+            for (int i = row + from; i < row + to; i++) {
+                energy[i] = squaredGradient(i);
+            }
+        } else {
+            for (int i = row + from; i < row + to; i++) {
+                energy[i] = Math.sqrt(squaredGradient(i));
             }
         }
     }
 
+    /**
+     * squared dual gradient of the interior pixel at index i.
+     */
+    private int squaredGradient(int i) {
+        int left = color[i - 1];
+        int right = color[i + 1];
+        int up = color[i - stride];
+        int down = color[i + stride];
+        int rx = ((left >> 16) & 0xFF) - ((right >> 16) & 0xFF);
+        int gx = ((left >> 8) & 0xFF) - ((right >> 8) & 0xFF);
+        int bx = (left & 0xFF) - (right & 0xFF);
+        int ry = ((up >> 16) & 0xFF) - ((down >> 16) & 0xFF);
+        int gy = ((up >> 8) & 0xFF) - ((down >> 8) & 0xFF);
+        int by = (up & 0xFF) - (down & 0xFF);
+        return rx * rx + gx * gx + bx * bx + ry * ry + gy * gy + by * by;
+    }
+
     private boolean isValid(int x, int y) {
         return x >= 0 && x < width && y >= 0 && y < height;
     }
@@ -282,16 +1024,4 @@ public class SeamCarver {
             }
         }
     }
-
-    private static int getRed(int rgb) {
-        return (rgb >> 16) & 0xFF;
-    }
-
-    private static int getGreen(int rgb) {
-        return (rgb >> 8) & 0xFF;
-    }
-
-    private static int getBlue(int rgb) {
-        return (rgb >> 0) & 0xFF;
-    }
 }
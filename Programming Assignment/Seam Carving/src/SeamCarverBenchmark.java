@@ -0,0 +1,94 @@
+/******************************************************************************
+ *  Compilation:  javac SeamCarverBenchmark.java
+ *  Execution:    java SeamCarverBenchmark seams input1.png input2.png ...
+ *  Dependencies: SeamCarver.java
+ *
+ *  Time the SeamCarver operations on each image, with dual-gradient and with
+ *  squared-gradient energies: construction (energy map throughput),
+ *  findVerticalSeam, findHorizontalSeam, and removing the given number of
+ *  vertical and then horizontal seams as ResizeDemo does, which includes
+ *  recomputing the energies and repairing the seam costs along each seam;
+ *  then the same reduction by carveTo, with several seams per search and in
+ *  greedy order, and inserting as many vertical and then horizontal seams.
+ *  Every measurement is repeated over a few rounds so the later rounds show
+ *  JIT-compiled code.
+ *
+ *  % java SeamCarverBenchmark 100 HJocean.png chameleon.png
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Picture;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.Stopwatch;
+
+public class SeamCarverBenchmark {
+    private static final int ROUNDS = 3;
+    private static final int FINDS = 20;
+
+    public static void main(String[] args) {
+        int seams = Integer.parseInt(args[0]);
+        for (int i = 1; i < args.length; i++) {
+            Picture picture = new Picture(args[i]);
+            StdOut.printf("%s (%d-by-%d image)\n", args[i], picture.width(), picture.height());
+            long checksum = 0;
+            for (int round = 0; round < 2 * ROUNDS; round++) {
+                boolean squared = round >= ROUNDS;
+                Stopwatch sw = new Stopwatch();
+                SeamCarver sc = new SeamCarver(picture, squared);
+                double construct = Math.max(sw.elapsedTime(), 1e-3);
+
+                // alternate directions, so each search builds its cost table from scratch
+                long vertical = 0;
+                long horizontal = 0;
+                for (int k = 0; k < FINDS; k++) {
+                    long start = System.nanoTime();
+                    checksum += sc.findVerticalSeam()[0];
+                    long middle = System.nanoTime();
+                    checksum += sc.findHorizontalSeam()[0];
+                    vertical += middle - start;
+                    horizontal += System.nanoTime() - middle;
+                }
+
+                int columns = Math.min(seams, sc.width() - 2);
+                int rows = Math.min(seams, sc.height() - 2);
+                sw = new Stopwatch();
+                for (int k = 0; k < columns; k++) {
+                    sc.removeVerticalSeam(sc.findVerticalSeam());
+                }
+                for (int k = 0; k < rows; k++) {
+                    sc.removeHorizontalSeam(sc.findHorizontalSeam());
+                }
+                double resize = sw.elapsedTime();
+                checksum += sc.width() + sc.height();
+
+                sc = new SeamCarver(picture, squared);
+                sw = new Stopwatch();
+                sc.carveTo(sc.width() - columns, sc.height() - rows, true, false);
+                double approximate = sw.elapsedTime();
+                checksum += sc.width() + sc.height();
+
+                sc = new SeamCarver(picture, squared);
+                sw = new Stopwatch();
+                sc.carveTo(sc.width() - columns, sc.height() - rows, false, true);
+                double greedy = sw.elapsedTime();
+                checksum += sc.width() + sc.height();
+
+                sc = new SeamCarver(picture, squared);
+                sw = new Stopwatch();
+                sc.insertVerticalSeams(columns);
+                sc.insertHorizontalSeams(rows);
+                double insert = sw.elapsedTime();
+                checksum += sc.width() + sc.height();
+
+                StdOut.printf("  %-8s construct %7.1f Mpixel/s   vertical seam %7.2f ms   horizontal seam %7.2f ms"
+                        + "   remove %d+%d seams %8.1f ms\n", squared ? "squared" : "gradient",
+                        picture.width() * picture.height() / construct / 1e6, vertical / 1e6 / FINDS,
+                        horizontal / 1e6 / FINDS, columns, rows, 1000 * resize);
+                StdOut.printf("  %-8s carveTo approximate %8.1f ms   carveTo greedy order %8.1f ms"
+                        + "   insert %d+%d seams %8.1f ms\n", "", 1000 * approximate, 1000 * greedy,
+                        columns, rows, 1000 * insert);
+            }
+            StdOut.println("  (checksum " + checksum + ")");
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * @author wen
+ * data: 2026/10/18
+ */
+
+import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.Stopwatch;
+import java.util.Arrays;
+
+/**
+ * For every vertex, the list of its ancestors and their distances, sorted by ancestor.
+ * The shortest ancestral path of v and w is then a merge-join of two short lists.
+ * Worth it for shallow DAGs like WordNet; on deep graphs the labels grow quadratically.
+ */
+public class AncestorIndex {
+    private final int[] offsets;
+    private final int[] ancestors;
+    private final int[] dists;
+
+    AncestorIndex(CSRDigraph G) {
+        this(G, new AncestorIndex(new int[1], new int[0], new int[0]));
+    }
+
+    /**
+     * prefix's labels, then labels for the vertices of G that prefix does not cover.
+     */
+    private AncestorIndex(CSRDigraph G, AncestorIndex prefix) {
+        int nV = G.V();
+        int[] edgeOffsets = G.offsets();
+        int[] targets = G.targets();
+        offsets = Arrays.copyOf(prefix.offsets, nV + 1);
+        int[] mark = new int[nV];
+        int[] dist = new int[nV];
+        int[] queue = new int[nV];
+        long[] label = new long[nV];
+        int size = prefix.ancestors.length;
+        int[] ancestorBuf = Arrays.copyOf(prefix.ancestors, size + nV);
+        int[] distBuf = Arrays.copyOf(prefix.dists, size + nV);
+
+        for (int v = prefix.V(); v < nV; v++) {
+            int tail = 0;
+            mark[v] = v + 1;
+            dist[v] = 0;
+            queue[tail++] = v;
+            for (int head = 0; head < tail; head++) {
+                int x = queue[head];
+                for (int e = edgeOffsets[x]; e < edgeOffsets[x + 1]; e++) {
+                    int y = targets[e];
+                    if (mark[y] != v + 1) {
+                        mark[y] = v + 1;
+                        dist[y] = dist[x] + 1;
+                        queue[tail++] = y;
+                    }
+                }
+            }
+            for (int i = 0; i < tail; i++) {
+                label[i] = (long) queue[i] << 32 | dist[queue[i]];
+            }
+            Arrays.sort(label, 0, tail);
+
+            if (size + tail > ancestorBuf.length) {
+                int capacity = Math.max(size + tail, 2 * ancestorBuf.length);
+                ancestorBuf = Arrays.copyOf(ancestorBuf, capacity);
+                distBuf = Arrays.copyOf(distBuf, capacity);
+            }
+            for (int i = 0; i < tail; i++) {
+                ancestorBuf[size] = (int) (label[i] >>> 32);
+                distBuf[size] = (int) label[i];
+                size++;
+            }
+            offsets[v + 1] = size;
+        }
+        ancestors = Arrays.copyOf(ancestorBuf, size);
+        dists = Arrays.copyOf(distBuf, size);
+    }
+
+    /**
+     * index over already-built label arrays, e.g. loaded from a snapshot.
+     */
+    AncestorIndex(int[] offsets, int[] ancestors, int[] dists) {
+        this.offsets = offsets;
+        this.ancestors = ancestors;
+        this.dists = dists;
+    }
+
+    /**
+     * index of G, which must be this index's graph with vertices appended and
+     * new edges leaving only the appended vertices, so existing labels still hold.
+     */
+    AncestorIndex extend(CSRDigraph G) {
+        return new AncestorIndex(G, this);
+    }
+
+    /**
+     * number of vertices.
+     */
+    public int V() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * total number of (ancestor, distance) pairs over all vertices.
+     */
+    public int labels() {
+        return ancestors.length;
+    }
+
+    /**
+     * approximate heap footprint of the index in bytes.
+     */
+    public long memoryBytes() {
+        return 4L * (offsets.length + ancestors.length + dists.length);
+    }
+
+    int[] offsets() {
+        return offsets;
+    }
+
+    int[] ancestors() {
+        return ancestors;
+    }
+
+    int[] dists() {
+        return dists;
+    }
+
+    /**
+     * packed length and ancestor of v and w, -1 for both if no common ancestor.
+     */
+    long lengthAndAncestor(int v, int w) {
+        int length = -1;
+        int ancestor = -1;
+        int i = offsets[v];
+        int j = offsets[w];
+        int endV = offsets[v + 1];
+        int endW = offsets[w + 1];
+        while (i < endV && j < endW) {
+            if (ancestors[i] < ancestors[j]) {
+                i++;
+            } else if (ancestors[i] > ancestors[j]) {
+                j++;
+            } else {
+                int total = dists[i] + dists[j];
+                if (length == -1 || total < length) {
+                    length = total;
+                    ancestor = ancestors[i];
+                }
+                i++;
+                j++;
+            }
+        }
+        return SAPCache.pack(length, ancestor);
+    }
+
+    /**
+     * packed length and ancestor of any vertex in v and any vertex in w.
+     */
+    long lengthAndAncestor(int[] v, int[] w) {
+        return lengthAndAncestor(v, 0, v.length, w, 0, w.length);
+    }
+
+    /**
+     * packed length and ancestor of any vertex in v[vFrom, vTo) and any vertex in w[wFrom, wTo).
+     */
+    long lengthAndAncestor(int[] v, int vFrom, int vTo, int[] w, int wFrom, int wTo) {
+        long best = SAPCache.pack(-1, -1);
+        for (int i = vFrom; i < vTo; i++) {
+            for (int j = wFrom; j < wTo; j++) {
+                best = min(best, lengthAndAncestor(v[i], w[j]));
+            }
+        }
+        return best;
+    }
+
+    /**
+     * packed length and ancestor of any vertex in v and any vertex in w.
+     */
+    long lengthAndAncestor(Iterable<Integer> v, Iterable<Integer> w) {
+        long best = SAPCache.pack(-1, -1);
+        for (int a : v) {
+            for (int b : w) {
+                best = min(best, lengthAndAncestor(a, b));
+            }
+        }
+        return best;
+    }
+
+    private static long min(long a, long b) {
+        int lengthA = SAPCache.length(a);
+        int lengthB = SAPCache.length(b);
+        if (lengthA == -1 || (lengthB != -1 && lengthB < lengthA)) {
+            return b;
+        }
+        return a;
+    }
+
+    /**
+     * print the size of the index next to a BFS workspace, one of which each query in flight borrows.
+     */
+    public static void main(String[] args) {
+        Digraph G = new Digraph(new In(args[0]));
+        SAP sap = new SAP(G);
+        Stopwatch sw = new Stopwatch();
+        AncestorIndex index = sap.buildAncestorIndex();
+        System.out.printf("built in %.3f seconds\n", sw.elapsedTime());
+        System.out.printf("%d vertices, %d labels (%.1f per vertex)\n",
+                index.V(), index.labels(), (double) index.labels() / index.V());
+        System.out.printf("index: %d KB, BFS workspace: %d KB per query in flight\n",
+                index.memoryBytes() / 1024, 24L * G.V() / 1024);
+    }
+}
@@ -0,0 +1,107 @@
+/******************************************************************************
+ *  Compilation:  javac CSRBenchmark.java
+ *  Execution:    java CSRBenchmark digraph.txt [bfs runs]
+ *  Dependencies: CSRDigraph.java
+ *
+ *  Compare the heap footprint and BFS throughput of an algs4 Digraph
+ *  (Bag<Integer> adjacency lists) with the same graph in CSR form.
+ *
+ *  % java CSRBenchmark digraph-wordnet.txt
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+import edu.princeton.cs.algs4.Stopwatch;
+
+public class CSRBenchmark {
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long bfs(Digraph G, int s, int[] mark, int stamp, int[] queue) {
+        long edges = 0;
+        int tail = 0;
+        mark[s] = stamp;
+        queue[tail++] = s;
+        for (int head = 0; head < tail; head++) {
+            for (int w : G.adj(queue[head])) {
+                edges++;
+                if (mark[w] != stamp) {
+                    mark[w] = stamp;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return edges;
+    }
+
+    private static long bfs(CSRDigraph G, int s, int[] mark, int stamp, int[] queue) {
+        int[] offsets = G.offsets();
+        int[] targets = G.targets();
+        long edges = 0;
+        int tail = 0;
+        mark[s] = stamp;
+        queue[tail++] = s;
+        for (int head = 0; head < tail; head++) {
+            int v = queue[head];
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                edges++;
+                if (mark[targets[e]] != stamp) {
+                    mark[targets[e]] = stamp;
+                    queue[tail++] = targets[e];
+                }
+            }
+        }
+        return edges;
+    }
+
+    public static void main(String[] args) {
+        Digraph input = new Digraph(new In(args[0]));
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+        int[] sources = new int[runs];
+        for (int i = 0; i < runs; i++) {
+            sources[i] = StdRandom.uniform(input.V());
+        }
+        StdOut.printf("%s: %d vertices, %d edges\n", args[0], input.V(), input.E());
+
+        long before = usedHeap();
+        Digraph digraph = new Digraph(input);
+        long digraphBytes = usedHeap() - before;
+        before = usedHeap();
+        CSRDigraph csr = new CSRDigraph(input);
+        long csrBytes = usedHeap() - before;
+        StdOut.printf("heap   Digraph %8d KB   CSRDigraph %8d KB (%d KB computed)\n",
+                digraphBytes / 1024, csrBytes / 1024, csr.memoryBytes() / 1024);
+
+        int[] mark = new int[input.V()];
+        int[] queue = new int[input.V()];
+        int stamp = 0;
+        for (int round = 0; round < 3; round++) {
+            Stopwatch sw = new Stopwatch();
+            long edges = 0;
+            for (int i = 0; i < runs; i++) {
+                edges += bfs(digraph, sources[i], mark, ++stamp, queue);
+            }
+            double digraphTime = sw.elapsedTime();
+
+            sw = new Stopwatch();
+            long csrEdges = 0;
+            for (int i = 0; i < runs; i++) {
+                csrEdges += bfs(csr, sources[i], mark, ++stamp, queue);
+            }
+            double csrTime = sw.elapsedTime();
+            if (edges != csrEdges) {
+                throw new IllegalStateException("traversals disagree");
+            }
+            StdOut.printf("bfs    Digraph %8.0f edges/ms  CSRDigraph %8.0f edges/ms\n",
+                    edges / (digraphTime * 1000), edges / (csrTime * 1000));
+        }
+    }
+}
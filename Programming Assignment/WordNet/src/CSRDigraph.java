@@ -0,0 +1,173 @@
+/**
+ * @author wen
+ * data: 2026/10/18
+ */
+
+import edu.princeton.cs.algs4.Digraph;
+import java.util.Arrays;
+
+/**
+ * Immutable digraph in compressed sparse row form.
+ * The edges leaving v are targets[offsets[v]] .. targets[offsets[v + 1] - 1],
+ * so a BFS step is a scan over one contiguous int range.
+ */
+public class CSRDigraph {
+    private final int[] offsets;
+    private final int[] targets;
+
+    /**
+     * copy of an algs4 digraph.
+     */
+    public CSRDigraph(Digraph G) {
+        if (G == null) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        offsets = new int[G.V() + 1];
+        targets = new int[G.E()];
+        int e = 0;
+        for (int v = 0; v < G.V(); v++) {
+            for (int w : G.adj(v)) {
+                targets[e++] = w;
+            }
+            offsets[v + 1] = e;
+        }
+    }
+
+    /**
+     * digraph on nV vertices with the first nE edges from[i] -> to[i].
+     */
+    CSRDigraph(int nV, int[] from, int[] to, int nE) {
+        offsets = new int[nV + 1];
+        targets = new int[nE];
+        for (int i = 0; i < nE; i++) {
+            if (from[i] < 0 || from[i] >= nV || to[i] < 0 || to[i] >= nV) {
+                throw new java.lang.IllegalArgumentException();
+            }
+            offsets[from[i] + 1]++;
+        }
+        for (int v = 0; v < nV; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] next = Arrays.copyOf(offsets, nV);
+        for (int i = 0; i < nE; i++) {
+            targets[next[from[i]]++] = to[i];
+        }
+    }
+
+    /**
+     * digraph over already-built CSR arrays, e.g. loaded from a snapshot.
+     */
+    CSRDigraph(int[] offsets, int[] targets) {
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    /**
+     * this digraph grown to nV vertices, plus the first nE edges from[i] -> to[i].
+     */
+    CSRDigraph withEdges(int nV, int[] from, int[] to, int nE) {
+        if (nV < V()) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        int[] newOffsets = new int[nV + 1];
+        for (int v = 0; v < V(); v++) {
+            newOffsets[v + 1] = outdegree(v);
+        }
+        for (int i = 0; i < nE; i++) {
+            if (from[i] < 0 || from[i] >= nV || to[i] < 0 || to[i] >= nV) {
+                throw new java.lang.IllegalArgumentException();
+            }
+            newOffsets[from[i] + 1]++;
+        }
+        for (int v = 0; v < nV; v++) {
+            newOffsets[v + 1] += newOffsets[v];
+        }
+        int[] newTargets = new int[targets.length + nE];
+        int[] next = Arrays.copyOf(newOffsets, nV);
+        for (int v = 0; v < V(); v++) {
+            System.arraycopy(targets, offsets[v], newTargets, next[v], outdegree(v));
+            next[v] += outdegree(v);
+        }
+        for (int i = 0; i < nE; i++) {
+            newTargets[next[from[i]]++] = to[i];
+        }
+        return new CSRDigraph(newOffsets, newTargets);
+    }
+
+    /**
+     * the digraph with every edge reversed.
+     */
+    public CSRDigraph reverse() {
+        int nV = V();
+        int[] from = new int[targets.length];
+        for (int v = 0; v < nV; v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                from[e] = v;
+            }
+        }
+        return new CSRDigraph(nV, targets, from, targets.length);
+    }
+
+    /**
+     * number of vertices.
+     */
+    public int V() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * number of edges.
+     */
+    public int E() {
+        return targets.length;
+    }
+
+    /**
+     * number of edges leaving v.
+     */
+    public int outdegree(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    /**
+     * is there a directed cycle? Kahn's algorithm: a cycle leaves vertices never freed.
+     */
+    public boolean hasCycle() {
+        int nV = V();
+        int[] indegree = new int[nV];
+        for (int w : targets) {
+            indegree[w]++;
+        }
+        int[] queue = new int[nV];
+        int tail = 0;
+        for (int v = 0; v < nV; v++) {
+            if (indegree[v] == 0) {
+                queue[tail++] = v;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int v = queue[head];
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                if (--indegree[targets[e]] == 0) {
+                    queue[tail++] = targets[e];
+                }
+            }
+        }
+        return tail != nV;
+    }
+
+    /**
+     * approximate heap footprint in bytes.
+     */
+    public long memoryBytes() {
+        return 4L * (offsets.length + targets.length);
+    }
+
+    int[] offsets() {
+        return offsets;
+    }
+
+    int[] targets() {
+        return targets;
+    }
+}
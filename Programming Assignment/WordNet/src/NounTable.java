@@ -0,0 +1,175 @@
+/**
+ * @author wen
+ * data: 2026/10/18
+ */
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * Immutable noun dictionary: nouns in sorted order, each owning a sorted slice
+ * ids[offsets[i]] .. ids[offsets[i + 1] - 1] of one shared synset id array,
+ * plus an open-addressing hash table from noun to its position.
+ */
+class NounTable {
+    private final String[] nouns;
+    private final int[] offsets;
+    private final int[] ids;
+    // position + 1 of the noun hashed to each slot, 0 for an empty slot
+    private final int[] slots;
+
+    /**
+     * table of the space-separated nouns in each synset, indexed by synset id.
+     */
+    NounTable(String[] synsets) {
+        String[] tokens = new String[Math.max(16, synsets.length)];
+        int[] tokenIds = new int[tokens.length];
+        int n = 0;
+        HashSet<String> distinct = new HashSet<>();
+        for (int id = 0; id < synsets.length; id++) {
+            String synset = synsets[id];
+            for (int start = 0, space; start <= synset.length(); start = space + 1) {
+                space = synset.indexOf(' ', start);
+                if (space == -1) {
+                    space = synset.length();
+                }
+                if (space == start) {
+                    continue;
+                }
+                if (n == tokens.length) {
+                    tokens = Arrays.copyOf(tokens, 2 * n);
+                    tokenIds = Arrays.copyOf(tokenIds, 2 * n);
+                }
+                tokens[n] = synset.substring(start, space);
+                tokenIds[n] = id;
+                distinct.add(tokens[n]);
+                n++;
+            }
+        }
+
+        nouns = distinct.toArray(new String[0]);
+        Arrays.sort(nouns);
+        slots = buildSlots(nouns);
+        offsets = new int[nouns.length + 1];
+        int[] position = new int[n];
+        for (int t = 0; t < n; t++) {
+            position[t] = find(tokens[t]);
+            offsets[position[t] + 1]++;
+        }
+        for (int i = 0; i < nouns.length; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        // tokens are in synset id order, so every slice comes out sorted
+        ids = new int[n];
+        int[] next = Arrays.copyOf(offsets, nouns.length);
+        for (int t = 0; t < n; t++) {
+            ids[next[position[t]]++] = tokenIds[t];
+        }
+    }
+
+    /**
+     * table over already-built arrays, e.g. loaded from a snapshot.
+     */
+    NounTable(String[] nouns, int[] offsets, int[] ids) {
+        this.nouns = nouns;
+        this.offsets = offsets;
+        this.ids = ids;
+        this.slots = buildSlots(nouns);
+    }
+
+    /**
+     * this table plus the nouns of added, whose synset ids start at firstId.
+     * New ids are larger than every existing one, so they are appended to each slice.
+     */
+    NounTable withSynsets(String[] added, int firstId) {
+        NounTable extra = new NounTable(added);
+        String[] merged = new String[nouns.length + extra.nouns.length];
+        int n = 0;
+        for (int i = 0, j = 0; i < nouns.length || j < extra.nouns.length; ) {
+            int cmp = i == nouns.length ? 1 : j == extra.nouns.length ? -1 : nouns[i].compareTo(extra.nouns[j]);
+            if (cmp <= 0) {
+                merged[n++] = nouns[i++];
+            }
+            if (cmp == 0) {
+                j++;
+            } else if (cmp > 0) {
+                merged[n++] = extra.nouns[j++];
+            }
+        }
+        merged = Arrays.copyOf(merged, n);
+
+        int[] mergedOffsets = new int[n + 1];
+        int[] mergedIds = new int[ids.length + extra.ids.length];
+        for (int k = 0, i = 0, j = 0; k < n; k++) {
+            int to = mergedOffsets[k];
+            if (i < nouns.length && nouns[i].equals(merged[k])) {
+                System.arraycopy(ids, from(i), mergedIds, to, to(i) - from(i));
+                to += to(i) - from(i);
+                i++;
+            }
+            if (j < extra.nouns.length && extra.nouns[j].equals(merged[k])) {
+                for (int e = extra.from(j); e < extra.to(j); e++) {
+                    mergedIds[to++] = firstId + extra.ids[e];
+                }
+                j++;
+            }
+            mergedOffsets[k + 1] = to;
+        }
+        return new NounTable(merged, mergedOffsets, mergedIds);
+    }
+
+    private static int[] buildSlots(String[] nouns) {
+        int[] slots = new int[Integer.highestOneBit(Math.max(2, 2 * nouns.length) - 1) << 1];
+        int mask = slots.length - 1;
+        for (int i = 0; i < nouns.length; i++) {
+            int slot = hash(nouns[i]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = i + 1;
+        }
+        return slots;
+    }
+
+    private static int hash(String noun) {
+        int h = noun.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * position of noun in sorted order, or -1 if it is not in the table.
+     */
+    int find(String noun) {
+        int mask = slots.length - 1;
+        for (int slot = hash(noun) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (nouns[slots[slot] - 1].equals(noun)) {
+                return slots[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    int size() {
+        return nouns.length;
+    }
+
+    String[] nouns() {
+        return nouns;
+    }
+
+    int[] offsets() {
+        return offsets;
+    }
+
+    int[] ids() {
+        return ids;
+    }
+
+    int from(int noun) {
+        return offsets[noun];
+    }
+
+    int to(int noun) {
+        return offsets[noun + 1];
+    }
+}
@@ -3,46 +3,146 @@
  * data: 2019/5/19
  */
 
+import edu.princeton.cs.algs4.In;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 public class Outcast {
+    // below this many pairs a task computes its distances without splitting further
+    private static final int PAIRS_PER_TASK = 32;
     private final WordNet wordnet;
+    private final ForkJoinPool pool;
 
     /**
      * constructor takes a WordNet object
      */
     public Outcast(WordNet wordnet) {
+        this(wordnet, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * outcast scoring that computes pair distances on the given pool.
+     */
+    public Outcast(WordNet wordnet, ForkJoinPool pool) {
+        if (wordnet == null || pool == null) {
+            throw new java.lang.IllegalArgumentException();
+        }
         this.wordnet = wordnet;
+        this.pool = pool;
     }
 
     /**
      * given an array of WordNet nouns, return an outcast
      */
     public String outcast(String[] nouns) {
-        if (nouns == null) {
+        return outcasts(new String[][] {nouns})[0];
+    }
+
+    /**
+     * the outcast of each array of WordNet nouns, with all pair distances computed in one pass.
+     */
+    public String[] outcasts(String[][] nounSets) {
+        if (nounSets == null) {
             throw new java.lang.IllegalArgumentException();
         }
-        int maxDistance = 0;
-        String outcast = null;
-        for (String noun : nouns) {
-            int sum = 0;
-            for (String s : nouns) {
-                sum += wordnet.distance(noun, s);
+        int nPairs = 0;
+        for (String[] nouns : nounSets) {
+            if (nouns == null) {
+                throw new java.lang.IllegalArgumentException();
             }
-            if (sum >= maxDistance) {
-                maxDistance = sum;
-                outcast = noun;
+            for (String noun : nouns) {
+                if (!wordnet.isNoun(noun)) {
+                    throw new java.lang.IllegalArgumentException();
+                }
+            }
+            nPairs += nouns.length * (nouns.length - 1) / 2;
+        }
+
+        // only the upper triangle: distance is symmetric and zero on the diagonal
+        String[] first = new String[nPairs];
+        String[] second = new String[nPairs];
+        int p = 0;
+        for (String[] nouns : nounSets) {
+            for (int i = 0; i < nouns.length; i++) {
+                for (int j = i + 1; j < nouns.length; j++) {
+                    first[p] = nouns[i];
+                    second[p] = nouns[j];
+                    p++;
+                }
             }
         }
-        return outcast;
+        int[] distances = new int[nPairs];
+        pool.invoke(new DistanceTask(first, second, distances, 0, nPairs));
+
+        String[] outcasts = new String[nounSets.length];
+        p = 0;
+        for (int s = 0; s < nounSets.length; s++) {
+            String[] nouns = nounSets[s];
+            int[] sum = new int[nouns.length];
+            for (int i = 0; i < nouns.length; i++) {
+                for (int j = i + 1; j < nouns.length; j++) {
+                    sum[i] += distances[p];
+                    sum[j] += distances[p];
+                    p++;
+                }
+            }
+            int maxDistance = 0;
+            for (int i = 0; i < nouns.length; i++) {
+                if (sum[i] >= maxDistance) {
+                    maxDistance = sum[i];
+                    outcasts[s] = nouns[i];
+                }
+            }
+        }
+        return outcasts;
+    }
+
+    /**
+     * fills distances[lo, hi); each query borrows a traversal workspace from SAP's pool.
+     */
+    private final class DistanceTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final String[] first;
+        private final String[] second;
+        private final int[] distances;
+        private final int lo;
+        private final int hi;
+
+        DistanceTask(String[] first, String[] second, int[] distances, int lo, int hi) {
+            this.first = first;
+            this.second = second;
+            this.distances = distances;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= PAIRS_PER_TASK) {
+                for (int p = lo; p < hi; p++) {
+                    distances[p] = wordnet.distance(first[p], second[p]);
+                }
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new DistanceTask(first, second, distances, lo, mid),
+                    new DistanceTask(first, second, distances, mid, hi));
+        }
     }
 
-    /*
+    /**
+     * java Outcast synsets.txt hypernyms.txt outcast5.txt outcast8.txt ...
+     */
     public static void main(String[] args) {
         WordNet wordnet = new WordNet(args[0], args[1]);
         Outcast outcast = new Outcast(wordnet);
-        In in = new In(args[2]);
-        String[] nouns = in.readAllStrings();
-        System.out.println((outcast.outcast(nouns)));
+        String[][] nounSets = new String[args.length - 2][];
+        for (int t = 2; t < args.length; t++) {
+            nounSets[t - 2] = new In(args[t]).readAllStrings();
+        }
+        String[] outcasts = outcast.outcasts(nounSets);
+        for (int t = 2; t < args.length; t++) {
+            System.out.println(args[t] + ": " + outcasts[t - 2]);
+        }
     }
-
-     */
 }
@@ -0,0 +1,71 @@
+/******************************************************************************
+ *  Compilation:  javac ParseBenchmark.java
+ *  Execution:    java ParseBenchmark synsets.txt hypernyms.txt hypernyms100K.txt ...
+ *  Dependencies: WordNetParser.java CSRDigraph.java
+ *
+ *  Time loading synsets.txt and each hypernyms file, once through algs4 In
+ *  with String.split and Integer.parseInt, and once through WordNetParser.
+ *  Each hypernyms file must use the ids of the given synsets file.
+ *
+ *  % java ParseBenchmark synsets.txt hypernyms*.txt
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.Stopwatch;
+
+public class ParseBenchmark {
+    private static final int ROUNDS = 5;
+
+    private static int splitSynsets(String name) {
+        In in = new In(name);
+        int count = 0;
+        while (!in.isEmpty()) {
+            String[] line = in.readLine().split(",");
+            Integer.parseInt(line[0]);
+            count += line[1].split(" ").length;
+        }
+        return count;
+    }
+
+    private static int splitHypernyms(String name) {
+        In in = new In(name);
+        int count = 0;
+        while (!in.isEmpty()) {
+            String[] line = in.readLine().split(",");
+            Integer.parseInt(line[0]);
+            for (int i = 1; i < line.length; i++) {
+                Integer.parseInt(line[i]);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * best time in milliseconds over ROUNDS runs.
+     */
+    private static double best(Runnable task) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < ROUNDS; i++) {
+            Stopwatch sw = new Stopwatch();
+            task.run();
+            best = Math.min(best, sw.elapsedTime() * 1000);
+        }
+        return best;
+    }
+
+    public static void main(String[] args) {
+        String synsets = args[0];
+        int nV = WordNetParser.parseSynsets(synsets).length;
+        StdOut.printf("%-36s %10s %10s\n", "file", "split ms", "parser ms");
+        StdOut.printf("%-36s %10.1f %10.1f\n", synsets,
+                best(() -> splitSynsets(synsets)), best(() -> WordNetParser.parseSynsets(synsets)));
+        for (int i = 1; i < args.length; i++) {
+            String hypernyms = args[i];
+            StdOut.printf("%-36s %10.1f %10.1f\n", hypernyms,
+                    best(() -> splitHypernyms(hypernyms)), best(() -> WordNetParser.parseHypernyms(hypernyms, nV)));
+        }
+    }
+}
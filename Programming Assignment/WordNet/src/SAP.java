@@ -4,18 +4,39 @@
  */
 
 import edu.princeton.cs.algs4.Digraph;
-import edu.princeton.cs.algs4.BreadthFirstDirectedPaths;
 import edu.princeton.cs.algs4.In;
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+/**
+ * Shortest ancestral paths in a digraph.
+ * Instances are safe for concurrent use: the graph and index are immutable
+ * and each query borrows a traversal workspace from a lock-free pool.
+ */
 public class SAP {
-    private final Digraph G;
+    private final CSRDigraph G;
+    private final WorkspacePool workspaces;
+    private volatile SAPCache<Long> cache;
+    private volatile AncestorIndex index;
+    // hyponym edges, built on the first nearest-neighbor search
+    private volatile CSRDigraph reverse;
+    private volatile SAPMetrics metrics;
 
     public SAP(Digraph G) {
+        this(new CSRDigraph(G));
+    }
+
+    /**
+     * SAP over an immutable CSR digraph, which is shared rather than copied.
+     */
+    SAP(CSRDigraph G) {
         if (G == null) {
             throw new java.lang.IllegalArgumentException();
         }
-        this.G = new Digraph(G);
+        this.G = G;
+        int cores = Runtime.getRuntime().availableProcessors();
+        workspaces = new WorkspacePool(G.V(), 2 * cores, 8 * cores);
     }
 
     /**
@@ -25,7 +46,7 @@ public class SAP {
     public int length(int v, int w) {
         validateVertex(v);
         validateVertex(w);
-        return getSAP(G, v, w)[0];
+        return SAPCache.length(getCachedSAP(v, w));
     }
 
     /**
@@ -35,7 +56,7 @@ public class SAP {
     public int ancestor(int v, int w) {
         validateVertex(v);
         validateVertex(w);
-        return getSAP(G, v, w)[1];
+        return SAPCache.ancestor(getCachedSAP(v, w));
     }
 
     /**
@@ -48,7 +69,7 @@ public class SAP {
         }
         validateVertexs(v);
         validateVertexs(w);
-        return getSAP(G, v, w)[0];
+        return SAPCache.length(getSAP(v, w));
     }
 
     /**
@@ -61,39 +82,404 @@ public class SAP {
         }
         validateVertexs(v);
         validateVertexs(w);
-        return getSAP(G, v, w)[1];
-    }
-
-    private static int[] getSAP(Digraph G, int v, int w) {
-        return getSAP(G, toIterable(v), toIterable(w));
-    }
-    private static int[] getSAP(Digraph G, Iterable<Integer> v, Iterable<Integer> w) {
-        int length = -1;
-        int ancestor = -1;
-        int[] result = new int[2];
-        int nV = G.V();
-        int total;
-        BreadthFirstDirectedPaths bfsV = new BreadthFirstDirectedPaths(G, v);
-        BreadthFirstDirectedPaths bfsW = new BreadthFirstDirectedPaths(G, w);
-
-        for (int i = 0; i < nV; i++) {
-            if (bfsV.hasPathTo(i) && bfsW.hasPathTo(i)) {
-                total = bfsV.distTo(i) + bfsW.distTo(i);
-                if (length == -1 || length > total) {
-                    length = total;
-                    ancestor = i;
+        return SAPCache.ancestor(getSAP(v, w));
+    }
+
+    /**
+     * length of shortest ancestral path between any vertex in v and any vertex in w.
+     * -1 if no such path.
+     */
+    public int length(int[] v, int[] w) {
+        validateVertexs(v);
+        validateVertexs(w);
+        return SAPCache.length(getSAP(v, w));
+    }
+
+    /**
+     * a common ancestor of any vertex in v and any vertex in w in a shortest ancestral path.
+     * -1 if no such path.
+     */
+    public int ancestor(int[] v, int[] w) {
+        validateVertexs(v);
+        validateVertexs(w);
+        return SAPCache.ancestor(getSAP(v, w));
+    }
+
+    /**
+     * length of shortest ancestral path between any vertex in v and any vertex in each others[i].
+     * The search from v runs once and is shared by all of others.
+     */
+    public int[] lengths(int[] v, int[][] others) {
+        validateVertexs(v);
+        if (others == null) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        for (int[] w : others) {
+            validateVertexs(w);
+        }
+        int[] lengths = new int[others.length];
+        AncestorIndex idx = index;
+        if (idx != null) {
+            for (int i = 0; i < others.length; i++) {
+                lengths[i] = SAPCache.length(idx.lengthAndAncestor(v, others[i]));
+            }
+            return lengths;
+        }
+        SAPWorkspace ws = workspaces.acquire();
+        try {
+            ws.beginV();
+            for (int s : v) {
+                ws.addSourceV(s);
+            }
+            ws.searchAllV(G);
+            for (int i = 0; i < others.length; i++) {
+                ws.beginW();
+                for (int s : others[i]) {
+                    ws.addSourceW(s);
+                }
+                ws.searchW(G);
+                lengths[i] = ws.length();
+            }
+        } finally {
+            workspaces.release(ws);
+        }
+        return lengths;
+    }
+
+    /**
+     * shortest ancestral path of every pair (v[i], w[i]), written to lengths[i] and,
+     * unless ancestors is null, ancestors[i].
+     * Pairs are grouped by a shared vertex so its BFS runs once for the whole group,
+     * and groups are processed in parallel on the common ForkJoinPool.
+     */
+    public void lengthsAndAncestors(int[] v, int[] w, int[] lengths, int[] ancestors) {
+        if (v == null || w == null || lengths == null || v.length != w.length || lengths.length != v.length
+                || (ancestors != null && ancestors.length != v.length)) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        validateVertexs(v);
+        validateVertexs(w);
+        int n = v.length;
+
+        // key each pair by its endpoint that occurs in the most pairs
+        int[] count = new int[G.V()];
+        for (int i = 0; i < n; i++) {
+            count[v[i]]++;
+            count[w[i]]++;
+        }
+        int[] source = new int[n];
+        int[] partner = new int[n];
+        int[] start = new int[G.V() + 1];
+        for (int i = 0; i < n; i++) {
+            boolean byV = count[v[i]] > count[w[i]] || (count[v[i]] == count[w[i]] && v[i] <= w[i]);
+            source[i] = byV ? v[i] : w[i];
+            partner[i] = byV ? w[i] : v[i];
+            start[source[i] + 1]++;
+        }
+        for (int x = 0; x < G.V(); x++) {
+            start[x + 1] += start[x];
+        }
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[start[source[i]]++] = i;
+        }
+        ForkJoinPool.commonPool().invoke(new BatchTask(source, partner, order, 0, n, lengths, ancestors));
+    }
+
+    /**
+     * answers the pairs order[lo, hi), which hold whole groups of pairs with the same source.
+     */
+    private final class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int PAIRS_PER_TASK = 256;
+        private final int[] source;
+        private final int[] partner;
+        private final int[] order;
+        private final int lo;
+        private final int hi;
+        private final int[] lengths;
+        private final int[] ancestors;
+
+        BatchTask(int[] source, int[] partner, int[] order, int lo, int hi, int[] lengths, int[] ancestors) {
+            this.source = source;
+            this.partner = partner;
+            this.order = order;
+            this.lo = lo;
+            this.hi = hi;
+            this.lengths = lengths;
+            this.ancestors = ancestors;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > PAIRS_PER_TASK) {
+                int half = (lo + hi) >>> 1;
+                int mid = half;
+                while (mid < hi && source[order[mid]] == source[order[mid - 1]]) {
+                    mid++;
                 }
+                if (mid == hi) {
+                    // the group straddling the middle runs to hi: split at its start instead
+                    mid = half;
+                    while (mid > lo && source[order[mid]] == source[order[mid - 1]]) {
+                        mid--;
+                    }
+                }
+                if (mid > lo && mid < hi) {
+                    invokeAll(new BatchTask(source, partner, order, lo, mid, lengths, ancestors),
+                            new BatchTask(source, partner, order, mid, hi, lengths, ancestors));
+                    return;
+                }
+            }
+            for (int from = lo, to; from < hi; from = to) {
+                to = from + 1;
+                while (to < hi && source[order[to]] == source[order[from]]) {
+                    to++;
+                }
+                answerGroup(from, to);
+            }
+        }
+
+        private void answerGroup(int from, int to) {
+            if (to - from == 1 || index != null) {
+                for (int k = from; k < to; k++) {
+                    int i = order[k];
+                    store(i, getSAP(source[i], partner[i]));
+                }
+                return;
+            }
+            SAPWorkspace ws = workspaces.acquire();
+            try {
+                ws.beginV();
+                ws.addSourceV(source[order[from]]);
+                ws.searchAllV(G);
+                for (int k = from; k < to; k++) {
+                    int i = order[k];
+                    ws.beginW();
+                    ws.addSourceW(partner[i]);
+                    ws.searchW(G);
+                    store(i, SAPCache.pack(ws.length(), ws.ancestor()));
+                }
+            } finally {
+                workspaces.release(ws);
+            }
+        }
+
+        private void store(int i, long value) {
+            lengths[i] = SAPCache.length(value);
+            if (ancestors != null) {
+                ancestors[i] = SAPCache.ancestor(value);
+            }
+        }
+    }
+
+    /**
+     * packed length and ancestor of any vertex in v[vFrom, vTo) and any vertex in w[wFrom, wTo).
+     * The vertices are trusted to be valid.
+     */
+    long lengthAndAncestor(int[] v, int vFrom, int vTo, int[] w, int wFrom, int wTo) {
+        return getSAP(v, vFrom, vTo, w, wFrom, wTo);
+    }
+
+    /**
+     * packed length and ancestor of any vertex in v and any vertex in w, found by one search.
+     */
+    long lengthAndAncestor(Iterable<Integer> v, Iterable<Integer> w) {
+        if (v == null || w == null) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        validateVertexs(v);
+        validateVertexs(w);
+        return getSAP(v, w);
+    }
+
+    /**
+     * cache up to capacity results of the single-vertex queries, split into concurrency segments.
+     * Returns the cache so its hit and miss counters can be read.
+     */
+    public SAPCache<Long> enableCache(int capacity, SAPCache.Policy policy, int concurrency) {
+        SAPCache<Long> newCache = new SAPCache<>(capacity, policy, concurrency);
+        cache = newCache;
+        return newCache;
+    }
+
+    /**
+     * stop caching query results.
+     */
+    public void disableCache() {
+        cache = null;
+    }
+
+    /**
+     * record statistics of every query answered by a bidirectional search, i.e. not by
+     * the cache or the ancestor index. Returns the metrics so they can be read or snapshot.
+     */
+    public SAPMetrics enableMetrics() {
+        SAPMetrics newMetrics = new SAPMetrics();
+        metrics = newMetrics;
+        return newMetrics;
+    }
+
+    /**
+     * stop recording query statistics.
+     */
+    public void disableMetrics() {
+        metrics = null;
+    }
+
+    SAPMetrics metrics() {
+        return metrics;
+    }
+
+    void setMetrics(SAPMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * precompute every vertex's ancestors so queries become merge-joins instead of BFS.
+     * Returns the index so its memory footprint can be compared with BFS.
+     */
+    public AncestorIndex buildAncestorIndex() {
+        AncestorIndex newIndex = new AncestorIndex(G);
+        index = newIndex;
+        return newIndex;
+    }
+
+    /**
+     * drop the ancestor index and answer queries by BFS again.
+     */
+    public void dropAncestorIndex() {
+        index = null;
+    }
+
+    /**
+     * install an index previously built for this graph.
+     */
+    void setAncestorIndex(AncestorIndex index) {
+        if (index != null && index.V() != G.V()) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        this.index = index;
+    }
+
+    AncestorIndex ancestorIndex() {
+        return index;
+    }
+
+    CSRDigraph graph() {
+        return G;
+    }
+
+    /**
+     * visit vertices in order of ancestral distance from sources[from, to), until visitor stops.
+     */
+    void nearest(int[] sources, int from, int to, SAPWorkspace.Visitor visitor) {
+        CSRDigraph r = reverse;
+        if (r == null) {
+            // racing threads may each build one; they are equal, and any of them will do
+            r = G.reverse();
+            reverse = r;
+        }
+        SAPWorkspace ws = workspaces.acquire();
+        try {
+            ws.searchUpDown(G, r, sources, from, to, visitor);
+        } finally {
+            workspaces.release(ws);
+        }
+    }
+
+    /**
+     * packed length and ancestor of v and w, computed together and cached by unordered pair.
+     */
+    private long getCachedSAP(int v, int w) {
+        SAPCache<Long> c = cache;
+        if (c == null) {
+            return getSAP(v, w);
+        }
+        Long key = (long) Math.min(v, w) << 32 | Math.max(v, w);
+        long value = c.get(key);
+        if (value == SAPCache.MISS) {
+            value = getSAP(v, w);
+            c.put(key, SAPCache.length(value), SAPCache.ancestor(value));
+        }
+        return value;
+    }
+
+    private long getSAP(int v, int w) {
+        AncestorIndex idx = index;
+        if (idx != null) {
+            return idx.lengthAndAncestor(v, w);
+        }
+        SAPWorkspace ws = workspaces.acquire();
+        try {
+            ws.begin();
+            ws.addSourceV(v);
+            ws.addSourceW(w);
+            return search(ws);
+        } finally {
+            workspaces.release(ws);
+        }
+    }
+
+    private long getSAP(int[] v, int[] w) {
+        return getSAP(v, 0, v.length, w, 0, w.length);
+    }
+
+    private long getSAP(int[] v, int vFrom, int vTo, int[] w, int wFrom, int wTo) {
+        AncestorIndex idx = index;
+        if (idx != null) {
+            return idx.lengthAndAncestor(v, vFrom, vTo, w, wFrom, wTo);
+        }
+        SAPWorkspace ws = workspaces.acquire();
+        try {
+            ws.begin();
+            for (int i = vFrom; i < vTo; i++) {
+                ws.addSourceV(v[i]);
+            }
+            for (int i = wFrom; i < wTo; i++) {
+                ws.addSourceW(w[i]);
             }
+            return search(ws);
+        } finally {
+            workspaces.release(ws);
         }
-        result[0] = length;
-        result[1] = ancestor;
-        return result;
     }
 
-    private static Iterable<Integer> toIterable(int i) {
-        ArrayList<Integer> array = new ArrayList<>();
-        array.add(i);
-        return array;
+    private long getSAP(Iterable<Integer> v, Iterable<Integer> w) {
+        AncestorIndex idx = index;
+        if (idx != null) {
+            return idx.lengthAndAncestor(v, w);
+        }
+        SAPWorkspace ws = workspaces.acquire();
+        try {
+            ws.begin();
+            for (int s : v) {
+                ws.addSourceV(s);
+            }
+            for (int s : w) {
+                ws.addSourceW(s);
+            }
+            return search(ws);
+        } finally {
+            workspaces.release(ws);
+        }
+    }
+
+    /**
+     * run a bidirectional search from the sources already in ws and pack its result,
+     * recording it into the metrics if they are enabled.
+     */
+    private long search(SAPWorkspace ws) {
+        SAPMetrics m = metrics;
+        if (m == null) {
+            ws.search(G);
+        } else {
+            long start = System.nanoTime();
+            ws.search(G);
+            long elapsed = System.nanoTime() - start;
+            m.record(ws.visited(), ws.edgesScanned(G), ws.frontierPeak(), elapsed);
+        }
+        return SAPCache.pack(ws.length(), ws.ancestor());
     }
 
     private void validateVertex(int v) {
@@ -110,6 +496,15 @@ public class SAP {
         }
     }
 
+    private void validateVertexs(int[] vertexs) {
+        if (vertexs == null) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        for (int v : vertexs) {
+            validateVertex(v);
+        }
+    }
+
     public static void main(String[] args) {
         In in = new In(args[0]);
         Digraph G = new Digraph(in);
@@ -0,0 +1,343 @@
+/**
+ * @author wen
+ * data: 2026/10/18
+ */
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Size-bounded cache of SAP results, storing length and ancestor together.
+ * Keys are hashed onto independently locked segments, so many threads can
+ * query it at once; a single segment gives a plain bounded cache.
+ */
+public class SAPCache<K> {
+    /**
+     * returned by get when the key is not cached.
+     */
+    static final long MISS = Long.MIN_VALUE;
+
+    /**
+     * eviction policy of a SAPCache.
+     */
+    public enum Policy {
+        /** evict the least recently used entry. */
+        LRU,
+        /** W-TinyLFU: small LRU window, frequency-filtered admission to a segmented LRU. */
+        TINY_LFU
+    }
+
+    private final Segment<K>[] segments;
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    /**
+     * a cache holding at most capacity results behind a single lock.
+     */
+    public SAPCache(int capacity, Policy policy) {
+        this(capacity, policy, 1);
+    }
+
+    /**
+     * a cache holding at most capacity results, split into concurrency segments.
+     */
+    public SAPCache(int capacity, Policy policy, int concurrency) {
+        this(capacity, policy, concurrency, new LongAdder(), new LongAdder());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private SAPCache(int capacity, Policy policy, int concurrency, LongAdder hits, LongAdder misses) {
+        if (policy == null || capacity < 1 || concurrency < 1 || concurrency > capacity) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        this.hits = hits;
+        this.misses = misses;
+        segments = new Segment[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            int segmentCapacity = capacity / concurrency + (i < capacity % concurrency ? 1 : 0);
+            segments[i] = new Segment<>(segmentCapacity, policy);
+        }
+    }
+
+    /**
+     * an empty cache with the same shape, counting into the same hit and miss totals.
+     * Used when the data behind the cached results changes: readers still holding
+     * this cache may keep filling it, but none of its entries reach the copy.
+     */
+    SAPCache<K> emptyCopy() {
+        int capacity = 0;
+        for (Segment<K> segment : segments) {
+            capacity += segment.capacity;
+        }
+        return new SAPCache<>(capacity, segments[0].policy, segments.length, hits, misses);
+    }
+
+    /**
+     * number of lookups that found a cached result.
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * number of lookups that did not find a cached result.
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * number of cached results.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<K> segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.map.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * packed length and ancestor cached for key, or MISS.
+     */
+    long get(K key) {
+        long value = segmentFor(key).get(key);
+        if (value == MISS) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    void put(K key, int length, int ancestor) {
+        segmentFor(key).put(key, pack(length, ancestor));
+    }
+
+    static long pack(int length, int ancestor) {
+        return ((long) length << 32) | (ancestor & 0xFFFFFFFFL);
+    }
+
+    static int length(long value) {
+        return (int) (value >> 32);
+    }
+
+    static int ancestor(long value) {
+        return (int) value;
+    }
+
+    private Segment<K> segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return segments[(h & 0x7FFFFFFF) % segments.length];
+    }
+
+    private static final class Node<K> {
+        private final K key;
+        private long value;
+        private Node<K> prev;
+        private Node<K> next;
+        private Region<K> region;
+
+        Node(K key, long value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * doubly linked list in access order, least recent first.
+     */
+    private static final class Region<K> {
+        private final Node<K> head = new Node<>(null, 0);
+        private int size;
+
+        Region() {
+            head.prev = head;
+            head.next = head;
+        }
+
+        void addLast(Node<K> node) {
+            node.region = this;
+            node.prev = head.prev;
+            node.next = head;
+            head.prev.next = node;
+            head.prev = node;
+            size++;
+        }
+
+        void remove(Node<K> node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.region = null;
+            size--;
+        }
+
+        Node<K> first() {
+            return size == 0 ? null : head.next;
+        }
+    }
+
+    private static final class Segment<K> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final HashMap<K, Node<K>> map = new HashMap<>();
+        private final Policy policy;
+        private final int capacity;
+        // LRU keeps everything in window; TINY_LFU splits into window, probation and protected
+        private final Region<K> window = new Region<>();
+        private final Region<K> probation = new Region<>();
+        private final Region<K> protect = new Region<>();
+        private final int windowCapacity;
+        private final int protectCapacity;
+        private final FrequencySketch sketch;
+
+        Segment(int capacity, Policy policy) {
+            this.capacity = capacity;
+            this.policy = policy;
+            if (policy == Policy.LRU) {
+                windowCapacity = capacity;
+                protectCapacity = 0;
+                sketch = null;
+            } else {
+                windowCapacity = Math.max(1, capacity / 100);
+                protectCapacity = (capacity - windowCapacity) * 4 / 5;
+                sketch = new FrequencySketch(capacity);
+            }
+        }
+
+        long get(K key) {
+            lock.lock();
+            try {
+                if (sketch != null) {
+                    sketch.increment(key.hashCode());
+                }
+                Node<K> node = map.get(key);
+                if (node == null) {
+                    return MISS;
+                }
+                touch(node);
+                return node.value;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put(K key, long value) {
+            lock.lock();
+            try {
+                Node<K> node = map.get(key);
+                if (node != null) {
+                    node.value = value;
+                    touch(node);
+                    return;
+                }
+                node = new Node<>(key, value);
+                map.put(key, node);
+                window.addLast(node);
+                if (policy == Policy.LRU) {
+                    if (window.size > capacity) {
+                        evict(window.first());
+                    }
+                } else if (window.size > windowCapacity) {
+                    admit(window.first());
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void touch(Node<K> node) {
+            Region<K> region = node.region;
+            region.remove(node);
+            if (region == probation) {
+                protect.addLast(node);
+                if (protect.size > protectCapacity) {
+                    Node<K> demoted = protect.first();
+                    protect.remove(demoted);
+                    probation.addLast(demoted);
+                }
+            } else {
+                region.addLast(node);
+            }
+        }
+
+        /**
+         * move the window's oldest entry into the main space if it is used
+         * more often than the entry it would displace.
+         */
+        private void admit(Node<K> candidate) {
+            window.remove(candidate);
+            if (probation.size + protect.size < capacity - windowCapacity) {
+                probation.addLast(candidate);
+                return;
+            }
+            Node<K> victim = probation.first();
+            if (victim == null) {
+                victim = protect.first();
+            }
+            if (victim != null
+                    && sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode())) {
+                evict(victim);
+                probation.addLast(candidate);
+            } else {
+                map.remove(candidate.key);
+            }
+        }
+
+        private void evict(Node<K> node) {
+            node.region.remove(node);
+            map.remove(node.key);
+        }
+    }
+
+    /**
+     * count-min sketch of recent key frequencies, halved periodically so it ages.
+     */
+    private static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+        private final int[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int width = Integer.highestOneBit(Math.max(16, capacity) - 1) << 1;
+            table = new int[width * DEPTH];
+            mask = width - 1;
+            sampleSize = 10 * Math.max(16, capacity);
+        }
+
+        void increment(int hash) {
+            for (int i = 0; i < DEPTH; i++) {
+                table[index(hash, i)]++;
+            }
+            if (++additions == sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] >>>= 1;
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(int hash) {
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < DEPTH; i++) {
+                frequency = Math.min(frequency, table[index(hash, i)]);
+            }
+            return frequency;
+        }
+
+        private int index(int hash, int i) {
+            int h = hash * SEEDS[i];
+            h ^= h >>> 16;
+            return i * (mask + 1) + (h & mask);
+        }
+    }
+}
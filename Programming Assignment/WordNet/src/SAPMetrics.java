@@ -0,0 +1,203 @@
+/**
+ * @author wen
+ * data: 2026/10/18
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-query statistics of SAP's bidirectional searches: vertices visited,
+ * edges scanned, peak frontier size and wall time, each in a lock-free
+ * histogram. Recording is a few atomic increments; a SAP without metrics
+ * enabled pays one volatile read per query.
+ */
+public class SAPMetrics {
+    private final Histogram visited;
+    private final Histogram edges;
+    private final Histogram frontier;
+    private final Histogram nanos;
+
+    /**
+     * empty metrics; SAP.enableMetrics and WordNet.enableMetrics create them.
+     */
+    SAPMetrics() {
+        this(new Histogram(), new Histogram(), new Histogram(), new Histogram());
+    }
+
+    private SAPMetrics(Histogram visited, Histogram edges, Histogram frontier, Histogram nanos) {
+        this.visited = visited;
+        this.edges = edges;
+        this.frontier = frontier;
+        this.nanos = nanos;
+    }
+
+    void record(long visitedVertices, long edgesScanned, long frontierPeak, long elapsedNanos) {
+        visited.record(visitedVertices);
+        edges.record(edgesScanned);
+        frontier.record(frontierPeak);
+        nanos.record(elapsedNanos);
+    }
+
+    /**
+     * vertices reached from either side, per query.
+     */
+    public Histogram visitedVertices() {
+        return visited;
+    }
+
+    /**
+     * out-edges examined, per query.
+     */
+    public Histogram edgesScanned() {
+        return edges;
+    }
+
+    /**
+     * largest number of vertices on one BFS level of both sides together, per query.
+     */
+    public Histogram frontierPeak() {
+        return frontier;
+    }
+
+    /**
+     * search time in nanoseconds, per query.
+     */
+    public Histogram latencyNanos() {
+        return nanos;
+    }
+
+    /**
+     * a copy that later queries do not change.
+     */
+    public SAPMetrics snapshot() {
+        return new SAPMetrics(visited.snapshot(), edges.snapshot(), frontier.snapshot(), nanos.snapshot());
+    }
+
+    /**
+     * one line per histogram: count, mean, p50, p99, p99.9 and max.
+     */
+    @Override
+    public String toString() {
+        return String.format("%-10s %10s %12s %10s %10s %10s %12s%n",
+                "", "count", "mean", "p50", "p99", "p99.9", "max")
+                + visited.line("visited") + edges.line("edges") + frontier.line("frontier") + nanos.line("nanos");
+    }
+
+    /**
+     * Log-linear histogram of non-negative longs, in the style of HdrHistogram:
+     * each power of two is split into 8 buckets, so a reported percentile is
+     * within 12.5% of the recorded value.
+     */
+    public static final class Histogram {
+        private static final int SUB_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private final AtomicLongArray counts;
+        private final LongAdder sum;
+        private final AtomicLong max;
+
+        Histogram() {
+            counts = new AtomicLongArray(64 * SUB_BUCKETS);
+            sum = new LongAdder();
+            max = new AtomicLong();
+        }
+
+        private Histogram(Histogram from) {
+            counts = new AtomicLongArray(from.counts.length());
+            for (int i = 0; i < counts.length(); i++) {
+                counts.set(i, from.counts.get(i));
+            }
+            sum = new LongAdder();
+            sum.add(from.sum.sum());
+            max = new AtomicLong(from.max.get());
+        }
+
+        private static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exp = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        /**
+         * smallest value that falls in bucket i.
+         */
+        private static long lowest(int i) {
+            if (i < SUB_BUCKETS) {
+                return i;
+            }
+            int exp = i / SUB_BUCKETS + SUB_BITS - 1;
+            return (long) (SUB_BUCKETS + i % SUB_BUCKETS) << (exp - SUB_BITS);
+        }
+
+        void record(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            counts.incrementAndGet(bucket(value));
+            sum.add(value);
+            long m = max.get();
+            while (value > m && !max.compareAndSet(m, value)) {
+                m = max.get();
+            }
+        }
+
+        Histogram snapshot() {
+            return new Histogram(this);
+        }
+
+        /**
+         * number of recorded values.
+         */
+        public long count() {
+            long count = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                count += counts.get(i);
+            }
+            return count;
+        }
+
+        /**
+         * mean of the recorded values, 0 if there are none.
+         */
+        public double mean() {
+            long count = count();
+            return count == 0 ? 0 : (double) sum.sum() / count;
+        }
+
+        /**
+         * largest recorded value.
+         */
+        public long max() {
+            return max.get();
+        }
+
+        /**
+         * the value at quantile q (0 to 1), rounded up to its bucket's upper end; 0 if empty.
+         */
+        public long percentile(double q) {
+            if (q < 0 || q > 1) {
+                throw new java.lang.IllegalArgumentException();
+            }
+            long count = count();
+            long rank = Math.max(1, (long) Math.ceil(q * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= rank && seen > 0) {
+                    long upper = i + 1 < counts.length() ? lowest(i + 1) - 1 : Long.MAX_VALUE;
+                    return Math.min(upper, max());
+                }
+            }
+            return 0;
+        }
+
+        private String line(String name) {
+            return String.format("%-10s %10d %12.1f %10d %10d %10d %12d%n", name, count(), mean(),
+                    percentile(0.5), percentile(0.99), percentile(0.999), max());
+        }
+    }
+}
@@ -0,0 +1,320 @@
+/**
+ * @author wen
+ * data: 2026/10/18
+ */
+
+/**
+ * Reusable BFS state for one SAP query at a time.
+ * Visit marks are stamped with a per-side epoch, so starting a new query
+ * never clears the arrays and a steady-state query allocates nothing.
+ */
+class SAPWorkspace {
+    private final int[] markV;
+    private final int[] markW;
+    private final int[] distV;
+    private final int[] distW;
+    private final int[] queueV;
+    private final int[] queueW;
+    private int epochV;
+    private int epochW;
+    private int tailV;
+    private int tailW;
+    // queue entries whose out-edges the last search scanned, for SAPMetrics
+    private int expandedV;
+    private int expandedW;
+    private int length;
+    private int ancestor;
+
+    SAPWorkspace(int nV) {
+        markV = new int[nV];
+        markW = new int[nV];
+        distV = new int[nV];
+        distW = new int[nV];
+        queueV = new int[nV];
+        queueW = new int[nV];
+    }
+
+    /**
+     * start a new query, forgetting every vertex reached by the previous one.
+     */
+    void begin() {
+        beginV();
+        beginW();
+    }
+
+    /**
+     * forget the v side only, e.g. before searching from a new shared source set.
+     */
+    void beginV() {
+        epochV = nextEpoch(epochV, markV);
+        tailV = 0;
+    }
+
+    /**
+     * forget the w side and the result, keeping whatever the v side has reached.
+     */
+    void beginW() {
+        epochW = nextEpoch(epochW, markW);
+        tailW = 0;
+        length = -1;
+        ancestor = -1;
+    }
+
+    void addSourceV(int s) {
+        if (markV[s] != epochV) {
+            markV[s] = epochV;
+            distV[s] = 0;
+            queueV[tailV++] = s;
+            if (markW[s] == epochW) {
+                relax(s, distW[s]);
+            }
+        }
+    }
+
+    void addSourceW(int s) {
+        if (markW[s] != epochW) {
+            markW[s] = epochW;
+            distW[s] = 0;
+            queueW[tailW++] = s;
+            if (markV[s] == epochV) {
+                relax(s, distV[s]);
+            }
+        }
+    }
+
+    /**
+     * Lockstep BFS from both source sets, one level per side per round.
+     * Stops once the next level can no longer beat the best ancestral length.
+     */
+    void search(CSRDigraph G) {
+        int[] offsets = G.offsets();
+        int[] targets = G.targets();
+        int headV = 0;
+        int headW = 0;
+        for (int level = 0; headV < tailV || headW < tailW; level++) {
+            if (length != -1 && level + 1 >= length) {
+                break;
+            }
+            int end = tailV;
+            while (headV < end) {
+                int y = queueV[headV++];
+                for (int e = offsets[y]; e < offsets[y + 1]; e++) {
+                    int x = targets[e];
+                    if (markV[x] != epochV) {
+                        markV[x] = epochV;
+                        distV[x] = level + 1;
+                        queueV[tailV++] = x;
+                        if (markW[x] == epochW) {
+                            relax(x, level + 1 + distW[x]);
+                        }
+                    }
+                }
+            }
+            end = tailW;
+            while (headW < end) {
+                int y = queueW[headW++];
+                for (int e = offsets[y]; e < offsets[y + 1]; e++) {
+                    int x = targets[e];
+                    if (markW[x] != epochW) {
+                        markW[x] = epochW;
+                        distW[x] = level + 1;
+                        queueW[tailW++] = x;
+                        if (markV[x] == epochV) {
+                            relax(x, level + 1 + distV[x]);
+                        }
+                    }
+                }
+            }
+        }
+        expandedV = headV;
+        expandedW = headW;
+    }
+
+    /**
+     * vertices reached by the last search.
+     */
+    int visited() {
+        return tailV + tailW;
+    }
+
+    /**
+     * out-edges examined by the last search.
+     */
+    long edgesScanned(CSRDigraph G) {
+        long edges = 0;
+        for (int i = 0; i < expandedV; i++) {
+            edges += G.outdegree(queueV[i]);
+        }
+        for (int i = 0; i < expandedW; i++) {
+            edges += G.outdegree(queueW[i]);
+        }
+        return edges;
+    }
+
+    /**
+     * largest BFS level of the last search, both sides counted together.
+     * Queues hold vertices in level order, so each level is one run per side.
+     */
+    int frontierPeak() {
+        int peak = 0;
+        for (int i = 0, j = 0, level = 0; i < tailV || j < tailW; level++) {
+            int size = 0;
+            while (i < tailV && distV[queueV[i]] == level) {
+                i++;
+                size++;
+            }
+            while (j < tailW && distW[queueW[j]] == level) {
+                j++;
+                size++;
+            }
+            peak = Math.max(peak, size);
+        }
+        return peak;
+    }
+
+    /**
+     * BFS from the v sources until every ancestor has its distance.
+     */
+    void searchAllV(CSRDigraph G) {
+        int[] offsets = G.offsets();
+        int[] targets = G.targets();
+        for (int headV = 0; headV < tailV; headV++) {
+            int y = queueV[headV];
+            for (int e = offsets[y]; e < offsets[y + 1]; e++) {
+                int x = targets[e];
+                if (markV[x] != epochV) {
+                    markV[x] = epochV;
+                    distV[x] = distV[y] + 1;
+                    queueV[tailV++] = x;
+                }
+            }
+        }
+    }
+
+    /**
+     * BFS from the w sources only, against a v side already searched to exhaustion.
+     * Stops once the next level can no longer beat the best ancestral length.
+     */
+    void searchW(CSRDigraph G) {
+        int[] offsets = G.offsets();
+        int[] targets = G.targets();
+        int headW = 0;
+        for (int level = 0; headW < tailW; level++) {
+            if (length != -1 && level + 1 >= length) {
+                return;
+            }
+            int end = tailW;
+            while (headW < end) {
+                int y = queueW[headW++];
+                for (int e = offsets[y]; e < offsets[y + 1]; e++) {
+                    int x = targets[e];
+                    if (markW[x] != epochW) {
+                        markW[x] = epochW;
+                        distW[x] = level + 1;
+                        queueW[tailW++] = x;
+                        if (markV[x] == epochV) {
+                            relax(x, level + 1 + distV[x]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Ancestral distance from sources[from, to) to every vertex, in nondecreasing order.
+     * A path climbs hypernym edges of G (v side) and then descends edges of reverse
+     * (w side); reaching a vertex on the way up also reaches it for the way down.
+     * visitor sees each vertex once, when its distance is settled, until it returns false.
+     */
+    void searchUpDown(CSRDigraph G, CSRDigraph reverse, int[] sources, int from, int to, Visitor visitor) {
+        begin();
+        for (int i = from; i < to; i++) {
+            int s = sources[i];
+            boolean fresh = markW[s] != epochW;
+            reachUp(s, 0);
+            if (fresh && !visitor.visit(s, 0)) {
+                return;
+            }
+        }
+        int[] upOffsets = G.offsets();
+        int[] upTargets = G.targets();
+        int[] downOffsets = reverse.offsets();
+        int[] downTargets = reverse.targets();
+        int headV = 0;
+        int headW = 0;
+        for (int level = 0; headV < tailV || headW < tailW; level++) {
+            while (headV < tailV && distV[queueV[headV]] == level) {
+                int y = queueV[headV++];
+                for (int e = upOffsets[y]; e < upOffsets[y + 1]; e++) {
+                    int x = upTargets[e];
+                    if (markV[x] != epochV) {
+                        boolean fresh = markW[x] != epochW;
+                        reachUp(x, level + 1);
+                        if (fresh && !visitor.visit(x, level + 1)) {
+                            return;
+                        }
+                    }
+                }
+            }
+            while (headW < tailW && distW[queueW[headW]] == level) {
+                int y = queueW[headW++];
+                for (int e = downOffsets[y]; e < downOffsets[y + 1]; e++) {
+                    int x = downTargets[e];
+                    if (markW[x] != epochW) {
+                        markW[x] = epochW;
+                        distW[x] = level + 1;
+                        queueW[tailW++] = x;
+                        if (!visitor.visit(x, level + 1)) {
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void reachUp(int x, int dist) {
+        markV[x] = epochV;
+        distV[x] = dist;
+        queueV[tailV++] = x;
+        if (markW[x] != epochW) {
+            markW[x] = epochW;
+            distW[x] = dist;
+            queueW[tailW++] = x;
+        }
+    }
+
+    /**
+     * receives vertices settled by searchUpDown.
+     */
+    interface Visitor {
+        /**
+         * vertex is at ancestral distance dist; return false to stop the search.
+         */
+        boolean visit(int vertex, int dist);
+    }
+
+    int length() {
+        return length;
+    }
+
+    int ancestor() {
+        return ancestor;
+    }
+
+    private void relax(int x, int total) {
+        if (length == -1 || total < length) {
+            length = total;
+            ancestor = x;
+        }
+    }
+
+    private static int nextEpoch(int epoch, int[] mark) {
+        if (epoch == Integer.MAX_VALUE) {
+            java.util.Arrays.fill(mark, 0);
+            return 1;
+        }
+        return epoch + 1;
+    }
+}
@@ -3,16 +3,21 @@
  * data: 2019/5/19
  */
 
-import edu.princeton.cs.algs4.Bag;
-import edu.princeton.cs.algs4.Digraph;
-import edu.princeton.cs.algs4.DirectedCycle;
-import edu.princeton.cs.algs4.In;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * WordNet nouns and the shortest ancestral paths between them.
+ * Everything a query needs lives in one immutable State; updates build a new
+ * State and publish it with a single volatile write, so queries never block
+ * and always see either the old or the new taxonomy as a whole.
+ */
 public class WordNet {
-    private final HashMap<Integer, String> id2Synsets;
-    private final HashMap<String, Bag<Integer>> word2Id;
-    private final SAP sap;
+    private final ReentrantLock updateLock = new ReentrantLock();
+    private volatile State state;
 
     /**
      * constructor takes the name of the two input files
@@ -21,49 +26,43 @@ public class WordNet {
         if (synsets == null || hypernyms == null) {
             throw new java.lang.IllegalArgumentException();
         }
-        In synsetsIn = new In(synsets);
-        In hypernymsIn = new In(hypernyms);
-        id2Synsets = new HashMap<>();
-        word2Id = new HashMap<>();
-        parseSynsets(synsetsIn);
-        Digraph g = parseHypernyms(hypernymsIn);
-        sap = new SAP(g);
-    }
-
-    private void parseSynsets(In in) {
-        while (!in.isEmpty()) {
-            String[] line = in.readLine().split(",");
-            int id = Integer.parseInt(line[0]);
-            String synsets = line[1];
-            id2Synsets.put(id, synsets);
-            for (String numn : synsets.split(" ")) {
-                if (word2Id.containsKey(numn)) {
-                    word2Id.get(numn).add(id);
-                } else {
-                    Bag<Integer> idBag = new Bag<>();
-                    idBag.add(id);
-                    word2Id.put(numn, idBag);
-                }
-            }
+        String[] synsetArray = WordNetParser.parseSynsets(synsets);
+        CSRDigraph g = WordNetParser.parseHypernyms(hypernyms, synsetArray.length);
+        isRootedDAG(g);
+        state = new State(synsetArray, new NounTable(synsetArray), new SAP(g), null);
+    }
+
+    /**
+     * WordNet over data read back from a snapshot, already validated when it was saved.
+     */
+    WordNet(String[] synsets, NounTable nounTable, CSRDigraph g, AncestorIndex index) {
+        SAP sap = new SAP(g);
+        sap.setAncestorIndex(index);
+        state = new State(synsets, nounTable, sap, null);
+    }
+
+    /**
+     * load a WordNet saved by save, without parsing or revalidating it.
+     */
+    public static WordNet load(String snapshot) {
+        if (snapshot == null) {
+            throw new java.lang.IllegalArgumentException();
         }
+        return WordNetSnapshot.read(snapshot);
     }
 
-    private Digraph parseHypernyms(In in) {
-        Digraph G = new Digraph(id2Synsets.size());
-        while (!in.isEmpty()) {
-            String[] line = in.readLine().split(",");
-            int v = Integer.parseInt(line[0]);
-            for (int i = 1; i < line.length; i++) {
-                int w = Integer.parseInt(line[i]);
-                G.addEdge(v, w);
-            }
+    /**
+     * save this WordNet, including its ancestor index if built, as a binary snapshot.
+     */
+    public void save(String snapshot) {
+        if (snapshot == null) {
+            throw new java.lang.IllegalArgumentException();
         }
-        isRootedDAG(G);
-        return G;
+        State s = state;
+        WordNetSnapshot.write(snapshot, s.synsets, s.nounTable, s.sap.graph(), s.sap.ancestorIndex());
     }
 
-    private void isRootedDAG(Digraph G) {
-        DirectedCycle cycleG = new DirectedCycle(G);
+    private void isRootedDAG(CSRDigraph G) {
         int count = 0;
 
         for (int v = 0; v < G.V(); v++) {
@@ -72,7 +71,7 @@ public class WordNet {
             }
         }
 
-        if (cycleG.hasCycle() || count != 1) {
+        if (count != 1 || G.hasCycle()) {
             throw new java.lang.IllegalArgumentException();
         }
     }
@@ -81,7 +80,7 @@ public class WordNet {
      * returns all WordNet nouns
      */
     public Iterable<String> nouns() {
-        return word2Id.keySet();
+        return Collections.unmodifiableList(Arrays.asList(state.nounTable.nouns()));
     }
 
     /**
@@ -91,17 +90,74 @@ public class WordNet {
         if (word == null) {
             throw new java.lang.IllegalArgumentException();
         }
-        return word2Id.containsKey(word);
+        return state.nounTable.find(word) != -1;
     }
 
     /**
      * distance between nounA and nounB (defined below)
      */
     public int distance(String nounA, String nounB) {
-        if (!isNoun(nounA) || !isNoun(nounB)) {
+        State s = state;
+        return SAPCache.length(getSAP(s, s.cache, nounA, nounB));
+    }
+
+    /**
+     * distance between nounA and nounB, through a cache owned by the caller.
+     */
+    int distance(String nounA, String nounB, PairCache cache) {
+        State s = state;
+        return SAPCache.length(getSAP(s, cache.cacheFor(s), nounA, nounB));
+    }
+
+    /**
+     * distance between noun and each of others, in the order of others.
+     */
+    public int[] distances(String noun, Iterable<String> others) {
+        State s = state;
+        if (noun == null || others == null) {
             throw new java.lang.IllegalArgumentException();
         }
-        return sap.length(word2Id.get(nounA), word2Id.get(nounB));
+        ArrayList<int[]> ids = new ArrayList<>();
+        for (String other : others) {
+            ids.add(s.synsetIds(other));
+        }
+        return s.sap.lengths(s.synsetIds(noun), ids.toArray(new int[0][]));
+    }
+
+    /**
+     * the k nouns nearest to noun by ancestral distance, nearest first, ties in search order.
+     * Searches outward from noun's synsets, up through hypernyms and down through hyponyms,
+     * and stops as soon as k nouns are found; fewer are returned only if fewer are reachable.
+     */
+    public Iterable<String> nearest(String noun, int k) {
+        State s = state;
+        if (noun == null || k < 0) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        int i = s.nounTable.find(noun);
+        if (i == -1) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        LinkedHashSet<String> found = new LinkedHashSet<>();
+        if (k > 0) {
+            s.sap.nearest(s.nounTable.ids(), s.nounTable.from(i), s.nounTable.to(i), (synset, dist) -> {
+                String nouns = s.synsets[synset];
+                for (int start = 0, space; start <= nouns.length(); start = space + 1) {
+                    space = nouns.indexOf(' ', start);
+                    if (space == -1) {
+                        space = nouns.length();
+                    }
+                    if (space > start) {
+                        String other = nouns.substring(start, space);
+                        if (!other.equals(noun) && found.add(other) && found.size() == k) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            });
+        }
+        return Collections.unmodifiableList(new ArrayList<>(found));
     }
 
     /**
@@ -109,34 +165,316 @@ public class WordNet {
      * in a shortest ancestral path (defined below)
      */
     public String sap(String nounA, String nounB) {
-        if (!isNoun(nounA) || !isNoun(nounB)) {
+        State s = state;
+        return s.synsets[SAPCache.ancestor(getSAP(s, s.cache, nounA, nounB))];
+    }
+
+    /**
+     * sap of nounA and nounB, through a cache owned by the caller.
+     */
+    String sap(String nounA, String nounB, PairCache cache) {
+        State s = state;
+        return s.synsets[SAPCache.ancestor(getSAP(s, cache.cacheFor(s), nounA, nounB))];
+    }
+
+    /**
+     * cache up to capacity noun-pair results, split into concurrency segments.
+     * Returns the cache so its hit and miss counters can be read.
+     * The cache is emptied whenever an update is committed.
+     */
+    public SAPCache<?> enableCache(int capacity, SAPCache.Policy policy, int concurrency) {
+        SAPCache<NounPair> newCache = new SAPCache<>(capacity, policy, concurrency);
+        updateLock.lock();
+        try {
+            State s = state;
+            state = new State(s.synsets, s.nounTable, s.sap, newCache);
+        } finally {
+            updateLock.unlock();
+        }
+        return newCache;
+    }
+
+    /**
+     * stop caching noun-pair results.
+     */
+    public void disableCache() {
+        updateLock.lock();
+        try {
+            State s = state;
+            state = new State(s.synsets, s.nounTable, s.sap, null);
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * a new noun-pair cache for a caller to own, filled by the query methods that take one.
+     */
+    PairCache newPairCache(int capacity, SAPCache.Policy policy, int concurrency) {
+        return new PairCache(state.sap, new SAPCache<>(capacity, policy, concurrency));
+    }
+
+    /**
+     * the current noun-pair cache, or null.
+     */
+    SAPCache<?> cache() {
+        return state.cache;
+    }
+
+    /**
+     * record traversal statistics of every distance and sap query that runs a search.
+     * The metrics carry over when an update is committed.
+     */
+    public SAPMetrics enableMetrics() {
+        updateLock.lock();
+        try {
+            return state.sap.enableMetrics();
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * stop recording traversal statistics.
+     */
+    public void disableMetrics() {
+        updateLock.lock();
+        try {
+            state.sap.disableMetrics();
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * precompute every synset's hypernym ancestors so distance becomes a merge-join.
+     * Returns the index so its memory footprint can be inspected.
+     */
+    public AncestorIndex buildAncestorIndex() {
+        updateLock.lock();
+        try {
+            return state.sap.buildAncestorIndex();
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * start a batch of additions, applied together by WordNetUpdate.commit.
+     */
+    public WordNetUpdate update() {
+        return new WordNetUpdate(this, state.synsets.length);
+    }
+
+    /**
+     * add a synset under the given hypernyms and return its id.
+     */
+    public int addSynset(String synset, int... hypernyms) {
+        WordNetUpdate update = update();
+        int id = update.addSynset(synset, hypernyms);
+        update.commit();
+        return id;
+    }
+
+    /**
+     * make hypernym a hypernym of synset; rejected if it would create a cycle.
+     */
+    public void addHypernym(int synset, int hypernym) {
+        WordNetUpdate update = update();
+        update.addHypernym(synset, hypernym);
+        update.commit();
+    }
+
+    /**
+     * Publish baseV's synsets plus added, with edges from[i] -> to[i] added for i < nE.
+     * New synsets always come with a hypernym, so the root stays unique; only the
+     * new edges can close a cycle, so only their ancestors are searched.
+     */
+    void apply(int baseV, String[] added, int[] from, int[] to, int nE) {
+        updateLock.lock();
+        try {
+            State s = state;
+            if (s.synsets.length != baseV) {
+                throw new IllegalStateException("WordNet changed since this update began");
+            }
+            CSRDigraph g = s.sap.graph().withEdges(baseV + added.length, from, to, nE);
+            int[] mark = new int[g.V()];
+            int[] queue = new int[g.V()];
+            boolean oldVerticesChanged = false;
+            for (int i = 0; i < nE; i++) {
+                if (from[i] == to[i] || reaches(g, to[i], from[i], mark, i + 1, queue)) {
+                    throw new java.lang.IllegalArgumentException("hypernym edge creates a cycle");
+                }
+                oldVerticesChanged |= from[i] < baseV;
+            }
+
+            String[] synsets = Arrays.copyOf(s.synsets, g.V());
+            System.arraycopy(added, 0, synsets, baseV, added.length);
+            NounTable nounTable = added.length == 0 ? s.nounTable : s.nounTable.withSynsets(added, baseV);
+            SAP sap = new SAP(g);
+            sap.setMetrics(s.sap.metrics());
+            AncestorIndex index = s.sap.ancestorIndex();
+            if (index != null) {
+                sap.setAncestorIndex(oldVerticesChanged ? new AncestorIndex(g) : index.extend(g));
+            }
+            SAPCache<NounPair> cache = s.cache == null ? null : s.cache.emptyCopy();
+            state = new State(synsets, nounTable, sap, cache);
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * is target an ancestor of (or equal to) source? BFS over source's ancestors only.
+     */
+    private static boolean reaches(CSRDigraph G, int source, int target, int[] mark, int stamp, int[] queue) {
+        int[] offsets = G.offsets();
+        int[] targets = G.targets();
+        int tail = 0;
+        mark[source] = stamp;
+        queue[tail++] = source;
+        for (int head = 0; head < tail; head++) {
+            int x = queue[head];
+            if (x == target) {
+                return true;
+            }
+            for (int e = offsets[x]; e < offsets[x + 1]; e++) {
+                if (mark[targets[e]] != stamp) {
+                    mark[targets[e]] = stamp;
+                    queue[tail++] = targets[e];
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * packed distance and ancestor of two nouns, computed together and cached in c,
+     * if not null, by unordered pair.
+     */
+    private static long getSAP(State s, SAPCache<NounPair> c, String nounA, String nounB) {
+        if (nounA == null || nounB == null) {
             throw new java.lang.IllegalArgumentException();
         }
-        return id2Synsets.get(sap.ancestor(word2Id.get(nounA), word2Id.get(nounB)));
+        int a = s.nounTable.find(nounA);
+        int b = s.nounTable.find(nounB);
+        if (a == -1 || b == -1) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        NounPair key = null;
+        if (c != null) {
+            key = new NounPair(nounA, nounB);
+            long value = c.get(key);
+            if (value != SAPCache.MISS) {
+                return value;
+            }
+        }
+        int[] ids = s.nounTable.ids();
+        long value = s.sap.lengthAndAncestor(ids, s.nounTable.from(a), s.nounTable.to(a),
+                ids, s.nounTable.from(b), s.nounTable.to(b));
+        if (c != null) {
+            c.put(key, SAPCache.length(value), SAPCache.ancestor(value));
+        }
+        return value;
     }
 
-    /*
-    public static void main(String[] args) {
-        WordNet wordnet = new WordNet(args[0], args[1]);
+    /**
+     * one consistent version of the taxonomy.
+     */
+    private static final class State {
+        // synset field of synsets.txt, indexed by synset id
+        private final String[] synsets;
+        private final NounTable nounTable;
+        private final SAP sap;
+        private final SAPCache<NounPair> cache;
+
+        State(String[] synsets, NounTable nounTable, SAP sap, SAPCache<NounPair> cache) {
+            this.synsets = synsets;
+            this.nounTable = nounTable;
+            this.sap = sap;
+            this.cache = cache;
+        }
+
+        int[] synsetIds(String noun) {
+            int i = noun == null ? -1 : nounTable.find(noun);
+            if (i == -1) {
+                throw new java.lang.IllegalArgumentException();
+            }
+            return Arrays.copyOfRange(nounTable.ids(), nounTable.from(i), nounTable.to(i));
+        }
+    }
+
+    /**
+     * A noun-pair result cache owned by a caller such as WordNetService instead of
+     * by the WordNet, so it is unaffected by enableCache, disableCache or other
+     * owners. It holds the results of one taxonomy at a time, identified by the
+     * SAP that committing an update replaces: the first query after a commit
+     * swaps in an empty copy that keeps the hit and miss counters.
+     */
+    static final class PairCache {
+        private volatile Tagged current;
+
+        private PairCache(SAP sap, SAPCache<NounPair> cache) {
+            current = new Tagged(sap, cache);
+        }
 
-        System.out.println(wordnet.id2Synsets.get(77));
-        System.out.println(wordnet.word2Id.get("Abney_level").size());
-        Iterable<Integer> b = wordnet.G.adj(38003);
-        System.out.println(wordnet.G.adj(38003));
+        /**
+         * the cache for the latest state a query used.
+         */
+        SAPCache<?> cache() {
+            return current.cache;
+        }
 
+        /**
+         * the cache for results of s. Queries still on an older taxonomy may swap an
+         * older cache back in; that only costs misses, never a result of another taxonomy.
+         */
+        private SAPCache<NounPair> cacheFor(State s) {
+            Tagged tagged = current;
+            if (tagged.sap != s.sap) {
+                tagged = new Tagged(s.sap, tagged.cache.emptyCopy());
+                current = tagged;
+            }
+            return tagged.cache;
+        }
+
+        private static final class Tagged {
+            private final SAP sap;
+            private final SAPCache<NounPair> cache;
 
-        Iterable<Integer> t = wordnet.word2Id.get("horse");
-        for (Integer i : t) {
-            System.out.println(i);
+            Tagged(SAP sap, SAPCache<NounPair> cache) {
+                this.sap = sap;
+                this.cache = cache;
+            }
         }
-        System.out.println(wordnet.word2Id.size());
-        Iterable<Integer> t2 = wordnet.word2Id.get("zebra");
-        for (Integer i : t2) {
-            System.out.println(i);
+    }
+
+    private static final class NounPair {
+        private final String first;
+        private final String second;
+
+        NounPair(String a, String b) {
+            if (a.compareTo(b) <= 0) {
+                first = a;
+                second = b;
+            } else {
+                first = b;
+                second = a;
+            }
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof NounPair)) {
+                return false;
+            }
+            NounPair that = (NounPair) other;
+            return first.equals(that.first) && second.equals(that.second);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * first.hashCode() + second.hashCode();
         }
-        System.out.println(wordnet.sap.length(wordnet.word2Id.get("horse"), wordnet.word2Id.get("horse")));
-        //System.out.println(wordnet.word2Id.get("horse"));
-        //System.out.println(wordnet.word2Id.get("zebra"));
     }
-    */
 }
\ No newline at end of file
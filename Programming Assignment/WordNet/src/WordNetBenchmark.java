@@ -0,0 +1,184 @@
+/******************************************************************************
+ *  Compilation:  javac WordNetBenchmark.java
+ *  Execution:    java WordNetBenchmark synsets.txt hypernyms.txt fixtureDir [rounds]
+ *  Dependencies: WordNet.java SAP.java Outcast.java WordNetParser.java
+ *
+ *  Repeatable measurements of the hot paths, so an optimization can be
+ *  compared against the previous commit:
+ *    - WordNet construction from synsets.txt and hypernyms.txt
+ *    - SAP.length on random vertex pairs of digraph-wordnet.txt
+ *    - SAP.length on every pair of the adversarial hypernyms8WrongBFS.txt
+ *      and hypernymsManyPathsOneAncestor.txt graphs
+ *    - Outcast.outcast over every outcast*.txt in fixtureDir
+ *  Each case is warmed up, then timed over several rounds; the report gives
+ *  throughput and bytes allocated per operation by all live threads, so the
+ *  work Outcast and the batch queries hand to common-pool workers counts too.
+ *
+ *  % java WordNetBenchmark synsets.txt hypernyms.txt wordnet 5
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+import edu.princeton.cs.algs4.Stopwatch;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class WordNetBenchmark {
+    private static final int WARMUP_ROUNDS = 3;
+    private static final double MIN_ROUND_SECONDS = 0.2;
+    private static int rounds = 5;
+    // sink for results, so the JIT cannot drop the measured calls
+    private static long blackhole;
+
+    /**
+     * bytes allocated so far by each live thread, by thread id, or null if the JVM cannot tell.
+     */
+    private static Map<Long, Long> allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        long[] ids = bean.getAllThreadIds();
+        long[] bytes = ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(ids);
+        Map<Long, Long> allocated = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (bytes[i] != -1) {
+                allocated.put(ids[i], bytes[i]);
+            }
+        }
+        return allocated;
+    }
+
+    /**
+     * bytes allocated by all live threads since the snapshot start. A thread that
+     * ended in between is not counted; the common-pool workers outlive a round.
+     */
+    private static long allocatedSince(Map<Long, Long> start) {
+        long total = 0;
+        for (Map.Entry<Long, Long> e : allocatedBytes().entrySet()) {
+            total += e.getValue() - start.getOrDefault(e.getKey(), 0L);
+        }
+        return total;
+    }
+
+    /**
+     * run body (ops operations) for the warmup and measured rounds and print one line per round.
+     * A round repeats body until it has run for at least MIN_ROUND_SECONDS.
+     */
+    private static void measure(String name, int ops, Runnable body) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            body.run();
+        }
+        for (int i = 0; i < rounds; i++) {
+            Map<Long, Long> allocated = allocatedBytes();
+            Stopwatch sw = new Stopwatch();
+            long total = 0;
+            double seconds;
+            do {
+                body.run();
+                total += ops;
+                seconds = sw.elapsedTime();
+            } while (seconds < MIN_ROUND_SECONDS);
+            long bytes = allocated == null ? -1 : allocatedSince(allocated);
+            StdOut.printf("%-56s %14.1f ops/s %14s B/op\n", name, total / seconds,
+                    bytes == -1 ? "n/a" : String.format("%.1f", (double) bytes / total));
+        }
+    }
+
+    /**
+     * SAP over a file in hypernyms.txt format, sized by its largest synset id.
+     */
+    private static SAP hypernymSAP(String file) {
+        int nV = 0;
+        for (String line : new In(file).readAllLines()) {
+            for (String field : line.split(",")) {
+                if (!field.trim().isEmpty()) {
+                    nV = Math.max(nV, Integer.parseInt(field.trim()) + 1);
+                }
+            }
+        }
+        return new SAP(WordNetParser.parseHypernyms(file, nV));
+    }
+
+    private static void benchmarkAllPairs(String name, SAP sap, int nV) {
+        int repeat = Math.max(1, 100000 / (nV * nV));
+        measure("SAP.length all pairs " + name, repeat * nV * nV, () -> {
+            long sum = 0;
+            for (int r = 0; r < repeat; r++) {
+                for (int v = 0; v < nV; v++) {
+                    for (int w = 0; w < nV; w++) {
+                        sum += sap.length(v, w);
+                    }
+                }
+            }
+            blackhole += sum;
+        });
+    }
+
+    public static void main(String[] args) {
+        String synsets = args[0];
+        String hypernyms = args[1];
+        File dir = new File(args[2]);
+        if (args.length > 3) {
+            rounds = Integer.parseInt(args[3]);
+        }
+
+        measure("WordNet construction", 1, () -> blackhole += new WordNet(synsets, hypernyms).hashCode());
+
+        Digraph G = new Digraph(new In(new File(dir, "digraph-wordnet.txt").getPath()));
+        SAP sap = new SAP(G);
+        int pairs = 20000;
+        int[] v = new int[pairs];
+        int[] w = new int[pairs];
+        for (int i = 0; i < pairs; i++) {
+            v[i] = StdRandom.uniform(G.V());
+            w[i] = StdRandom.uniform(G.V());
+        }
+        measure("SAP.length random digraph-wordnet", pairs, () -> {
+            long sum = 0;
+            for (int i = 0; i < pairs; i++) {
+                sum += sap.length(v[i], w[i]);
+            }
+            blackhole += sum;
+        });
+
+        for (String name : new String[] {"hypernyms8WrongBFS.txt", "hypernymsManyPathsOneAncestor.txt"}) {
+            SAP adversarial = hypernymSAP(new File(dir, name).getPath());
+            benchmarkAllPairs(name, adversarial, adversarial.graph().V());
+        }
+
+        WordNet wordnet = new WordNet(synsets, hypernyms);
+        Outcast outcast = new Outcast(wordnet);
+        File[] files = dir.listFiles((d, file) -> file.startsWith("outcast") && file.endsWith(".txt"));
+        Arrays.sort(files);
+        List<String[]> nounSets = new ArrayList<>();
+        for (File file : files) {
+            String[] nouns = new In(file).readAllStrings();
+            boolean known = true;
+            for (String noun : nouns) {
+                known &= wordnet.isNoun(noun);
+            }
+            if (known) {
+                nounSets.add(nouns);
+            } else {
+                StdOut.println("skipping " + file.getName() + ": not all nouns are in " + synsets);
+            }
+        }
+        if (!nounSets.isEmpty()) {
+            measure("Outcast.outcast " + nounSets.size() + " fixtures", nounSets.size(), () -> {
+                for (String[] nouns : nounSets) {
+                    blackhole += outcast.outcast(nouns).length();
+                }
+            });
+        }
+        StdOut.println("(checksum " + blackhole + ")");
+    }
+}
@@ -0,0 +1,115 @@
+/******************************************************************************
+ *  Compilation:  javac WordNetLoadTest.java
+ *  Execution:    java WordNetLoadTest synsets.txt hypernyms.txt [seconds] [max threads]
+ *                                     [cache capacity] [virtual]
+ *  Dependencies: WordNetService.java WordNet.java
+ *
+ *  Local load generator: for 1, 2, 4, ... max threads, every thread issues
+ *  random WordNetService.distance queries for the given number of seconds.
+ *  Prints throughput and p50/p99 latency per thread count. With "virtual",
+ *  callers run on virtual threads (Java 21+, looked up reflectively).
+ *
+ *  % java WordNetLoadTest synsets.txt hypernyms.txt 5 16 0 virtual
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.StdOut;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class WordNetLoadTest {
+    // latency samples kept per caller; later samples overwrite the oldest
+    private static final int SAMPLES = 1 << 18;
+
+    private static final class Caller implements java.util.concurrent.Callable<long[]> {
+        private final WordNetService service;
+        private final String[] nouns;
+        private final long deadline;
+        private long count;
+
+        Caller(WordNetService service, String[] nouns, long deadline) {
+            this.service = service;
+            this.nouns = nouns;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public long[] call() {
+            long[] latency = new long[SAMPLES];
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (System.nanoTime() < deadline) {
+                String a = nouns[random.nextInt(nouns.length)];
+                String b = nouns[random.nextInt(nouns.length)];
+                long start = System.nanoTime();
+                service.distance(a, b);
+                latency[(int) (count++ % SAMPLES)] = System.nanoTime() - start;
+            }
+            return Arrays.copyOf(latency, (int) Math.min(count, SAMPLES));
+        }
+    }
+
+    private static ExecutorService executor(int threads, boolean virtual) throws Exception {
+        if (!virtual) {
+            return Executors.newFixedThreadPool(threads);
+        }
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException("virtual threads need Java 21 or later", e);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        WordNet wordnet = new WordNet(args[0], args[1]);
+        double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 5;
+        int maxThreads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int cacheCapacity = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+        boolean virtual = args.length > 5 && args[5].equals("virtual");
+        WordNetService service = new WordNetService(wordnet, cacheCapacity);
+        List<String> nounList = new ArrayList<>();
+        for (String noun : wordnet.nouns()) {
+            nounList.add(noun);
+        }
+        String[] nouns = nounList.toArray(new String[0]);
+
+        StdOut.printf("%8s %14s %10s %10s\n", "threads", "queries/s", "p50 us", "p99 us");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            ExecutorService pool = executor(threads, virtual);
+            long deadline = System.nanoTime() + (long) (seconds * 1e9);
+            List<Caller> callers = new ArrayList<>();
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                callers.add(new Caller(service, nouns, deadline));
+                results.add(pool.submit(callers.get(t)));
+            }
+            long[][] latencies = new long[threads][];
+            int samples = 0;
+            for (int t = 0; t < threads; t++) {
+                latencies[t] = results.get(t).get();
+                samples += latencies[t].length;
+            }
+            pool.shutdown();
+
+            long queries = 0;
+            for (Caller caller : callers) {
+                queries += caller.count;
+            }
+            long[] all = new long[samples];
+            int n = 0;
+            for (long[] latency : latencies) {
+                System.arraycopy(latency, 0, all, n, latency.length);
+                n += latency.length;
+            }
+            Arrays.sort(all);
+            // no query may finish in a very short round
+            StdOut.printf("%8d %14.0f %10s %10s\n", threads, queries / seconds,
+                    samples == 0 ? "n/a" : String.format("%.1f", all[all.length / 2] / 1e3),
+                    samples == 0 ? "n/a" : String.format("%.1f", all[(int) (all.length * 0.99)] / 1e3));
+        }
+    }
+}
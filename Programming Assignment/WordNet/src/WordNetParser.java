@@ -0,0 +1,173 @@
+/**
+ * @author wen
+ * data: 2026/10/18
+ */
+
+import edu.princeton.cs.algs4.In;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Byte-level parser for synsets.txt and hypernyms.txt.
+ * Files are memory-mapped and tokenized on ',', ' ' and '\n' in place,
+ * without regex splitting or intermediate String arrays.
+ */
+class WordNetParser {
+    private final ByteBuffer buf;
+    private final int end;
+    private int pos;
+    private byte[] scratch = new byte[64];
+
+    private WordNetParser(ByteBuffer buf) {
+        this.buf = buf;
+        this.end = buf.limit();
+    }
+
+    /**
+     * the synset field of each line of a synsets file, indexed by synset id.
+     */
+    static String[] parseSynsets(String name) {
+        WordNetParser in = open(name);
+        String[] synsets = new String[1024];
+        int n = 0;
+        while (in.skipBlankLines()) {
+            int id = in.readInt();
+            in.expect(',');
+            String synset = in.readField();
+            in.skipLine();
+            if (id >= synsets.length) {
+                synsets = Arrays.copyOf(synsets, Math.max(id + 1, 2 * synsets.length));
+            }
+            synsets[id] = synset;
+            n = Math.max(n, id + 1);
+        }
+        synsets = Arrays.copyOf(synsets, n);
+        for (String synset : synsets) {
+            if (synset == null) {
+                throw new java.lang.IllegalArgumentException("synset ids are not contiguous");
+            }
+        }
+        return synsets;
+    }
+
+    /**
+     * the hypernym digraph on nV synsets described by a hypernyms file.
+     */
+    static CSRDigraph parseHypernyms(String name, int nV) {
+        WordNetParser in = open(name);
+        int[] from = new int[Math.max(16, nV)];
+        int[] to = new int[from.length];
+        int nE = 0;
+        while (in.skipBlankLines()) {
+            int v = in.readInt();
+            while (in.peek() == ',') {
+                in.pos++;
+                if (nE == from.length) {
+                    from = Arrays.copyOf(from, 2 * nE);
+                    to = Arrays.copyOf(to, 2 * nE);
+                }
+                from[nE] = v;
+                to[nE] = in.readInt();
+                nE++;
+            }
+            in.skipLine();
+        }
+        return new CSRDigraph(nV, from, to, nE);
+    }
+
+    private static WordNetParser open(String name) {
+        Path path = Paths.get(name);
+        if (!Files.isRegularFile(path)) {
+            // URLs and classpath resources still go through algs4 In
+            byte[] bytes = new In(name).readAll().getBytes(StandardCharsets.UTF_8);
+            return new WordNetParser(ByteBuffer.wrap(bytes));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new WordNetParser(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int peek() {
+        return pos < end ? buf.get(pos) : -1;
+    }
+
+    /**
+     * move past empty lines; false at end of input.
+     */
+    private boolean skipBlankLines() {
+        while (pos < end && (buf.get(pos) == '\n' || buf.get(pos) == '\r')) {
+            pos++;
+        }
+        return pos < end;
+    }
+
+    private void skipLine() {
+        while (pos < end && buf.get(pos) != '\n') {
+            pos++;
+        }
+    }
+
+    private void expect(char c) {
+        if (peek() != c) {
+            throw new java.lang.IllegalArgumentException("expected '" + c + "' at byte " + pos);
+        }
+        pos++;
+    }
+
+    private int readInt() {
+        while (pos < end && buf.get(pos) == ' ') {
+            pos++;
+        }
+        int start = pos;
+        int value = 0;
+        while (pos < end) {
+            int b = buf.get(pos);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            value = 10 * value + (b - '0');
+            pos++;
+        }
+        if (pos == start) {
+            throw new java.lang.IllegalArgumentException("expected an integer at byte " + pos);
+        }
+        while (pos < end && buf.get(pos) == ' ') {
+            pos++;
+        }
+        return value;
+    }
+
+    /**
+     * the bytes up to the next ',' or end of line, decoded as UTF-8.
+     */
+    private String readField() {
+        int start = pos;
+        boolean ascii = true;
+        while (pos < end) {
+            int b = buf.get(pos);
+            if (b == ',' || b == '\n' || b == '\r') {
+                break;
+            }
+            ascii &= b >= 0;
+            pos++;
+        }
+        int length = pos - start;
+        if (length > scratch.length) {
+            scratch = new byte[Math.max(length, 2 * scratch.length)];
+        }
+        for (int i = 0; i < length; i++) {
+            scratch[i] = buf.get(start + i);
+        }
+        return new String(scratch, 0, length, ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * @author wen
+ * data: 2026/10/18
+ */
+
+/**
+ * Thread-safe query front end for serving WordNet lookups from many threads.
+ * Queries read one immutable WordNet state that updates replace atomically,
+ * every traversal borrows a workspace from SAP's lock-free pool, and the
+ * optional result cache is segmented with j.u.c locks, so platform and virtual
+ * threads can call in freely without synchronized blocks pinning a carrier.
+ * The cache belongs to the service: the WordNet's own cache settings and other
+ * services over the same WordNet neither replace nor share it.
+ */
+public class WordNetService {
+    private final WordNet wordnet;
+    // null if caching is off
+    private final WordNet.PairCache cache;
+
+    /**
+     * service over wordnet without result caching.
+     */
+    public WordNetService(WordNet wordnet) {
+        this(wordnet, 0);
+    }
+
+    /**
+     * service over wordnet caching up to cacheCapacity noun-pair results.
+     */
+    public WordNetService(WordNet wordnet, int cacheCapacity) {
+        if (wordnet == null || cacheCapacity < 0) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        this.wordnet = wordnet;
+        if (cacheCapacity > 0) {
+            // four segments per core, so concurrent queries rarely wait on the same segment lock
+            int segments = Math.min(cacheCapacity, 4 * Runtime.getRuntime().availableProcessors());
+            cache = wordnet.newPairCache(cacheCapacity, SAPCache.Policy.TINY_LFU, segments);
+        } else {
+            cache = null;
+        }
+    }
+
+    /**
+     * is the word a WordNet noun?
+     */
+    public boolean isNoun(String word) {
+        return wordnet.isNoun(word);
+    }
+
+    /**
+     * distance between nounA and nounB.
+     */
+    public int distance(String nounA, String nounB) {
+        return cache == null ? wordnet.distance(nounA, nounB) : wordnet.distance(nounA, nounB, cache);
+    }
+
+    /**
+     * distance between noun and each of others, in the order of others.
+     */
+    public int[] distances(String noun, Iterable<String> others) {
+        return wordnet.distances(noun, others);
+    }
+
+    /**
+     * a synset that is the common ancestor of nounA and nounB in a shortest ancestral path.
+     */
+    public String sap(String nounA, String nounB) {
+        return cache == null ? wordnet.sap(nounA, nounB) : wordnet.sap(nounA, nounB, cache);
+    }
+
+    /**
+     * this service's result cache, for its hit and miss counters; null if caching is off.
+     */
+    public SAPCache<?> cache() {
+        return cache == null ? null : cache.cache();
+    }
+}
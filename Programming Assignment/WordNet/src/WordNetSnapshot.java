@@ -0,0 +1,184 @@
+/**
+ * @author wen
+ * data: 2026/10/18
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary image of a validated WordNet: the CSR hypernym graph, the synsets,
+ * the noun dictionary and optionally the ancestor index, stored as flat
+ * big-endian int arrays and padded UTF-8 byte blocks.
+ * Loading maps the file and bulk-copies the arrays; nothing is re-parsed
+ * and the rooted-DAG check is not repeated, but every length, offset and
+ * vertex id is bounds-checked, so a truncated or damaged file fails with
+ * IllegalArgumentException instead of a huge allocation or a bad index.
+ */
+class WordNetSnapshot {
+    private static final int MAGIC = 0x574E5331; // "WNS1"
+    private static final int VERSION = 1;
+
+    private WordNetSnapshot() { }
+
+    static void write(String file, String[] synsets, NounTable nounTable, CSRDigraph G, AncestorIndex index) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(Paths.get(file)), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeInts(out, G.offsets());
+            writeInts(out, G.targets());
+            writeStrings(out, synsets);
+            writeStrings(out, nounTable.nouns());
+            writeInts(out, nounTable.offsets());
+            writeInts(out, nounTable.ids());
+            out.writeInt(index == null ? 0 : 1);
+            if (index != null) {
+                writeInts(out, index.offsets());
+                writeInts(out, index.ancestors());
+                writeInts(out, index.dists());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static WordNet read(String file) {
+        MappedByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                throw new java.lang.IllegalArgumentException();
+            }
+            int[] graphOffsets = readInts(buf);
+            int[] targets = readInts(buf);
+            int nV = graphOffsets.length - 1;
+            checkOffsets(graphOffsets, targets.length);
+            checkIds(targets, nV);
+            String[] synsets = readStrings(buf);
+            if (synsets.length != nV) {
+                throw new java.lang.IllegalArgumentException();
+            }
+            String[] nouns = readStrings(buf);
+            int[] nounOffsets = readInts(buf);
+            int[] ids = readInts(buf);
+            if (nounOffsets.length != nouns.length + 1) {
+                throw new java.lang.IllegalArgumentException();
+            }
+            checkOffsets(nounOffsets, ids.length);
+            checkIds(ids, nV);
+            AncestorIndex index = null;
+            if (buf.getInt() == 1) {
+                int[] indexOffsets = readInts(buf);
+                int[] ancestors = readInts(buf);
+                int[] dists = readInts(buf);
+                if (indexOffsets.length != nV + 1 || dists.length != ancestors.length) {
+                    throw new java.lang.IllegalArgumentException();
+                }
+                checkOffsets(indexOffsets, ancestors.length);
+                checkIds(ancestors, nV);
+                index = new AncestorIndex(indexOffsets, ancestors, dists);
+            }
+            return new WordNet(synsets, new NounTable(nouns, nounOffsets, ids), new CSRDigraph(graphOffsets, targets), index);
+        } catch (BufferUnderflowException | java.lang.IllegalArgumentException e) {
+            // a truncated or corrupted file: fail before sizing anything from its contents
+            throw new java.lang.IllegalArgumentException("not a WordNet snapshot: " + file, e);
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] a) throws IOException {
+        out.writeInt(a.length);
+        for (int x : a) {
+            out.writeInt(x);
+        }
+    }
+
+    /**
+     * offsets into one UTF-8 block, then the block padded to a multiple of 4 bytes.
+     */
+    private static void writeStrings(DataOutputStream out, String[] a) throws IOException {
+        byte[][] bytes = new byte[a.length][];
+        int[] offsets = new int[a.length + 1];
+        for (int i = 0; i < a.length; i++) {
+            bytes[i] = a[i].getBytes(StandardCharsets.UTF_8);
+            offsets[i + 1] = offsets[i] + bytes[i].length;
+        }
+        writeInts(out, offsets);
+        for (byte[] b : bytes) {
+            out.write(b);
+        }
+        for (int pad = offsets[a.length]; pad % 4 != 0; pad++) {
+            out.write(0);
+        }
+    }
+
+    private static int[] readInts(ByteBuffer buf) {
+        int n = buf.getInt();
+        if (n < 0 || n > buf.remaining() / 4) {
+            throw new BufferUnderflowException();
+        }
+        int[] a = new int[n];
+        buf.asIntBuffer().get(a);
+        buf.position(buf.position() + 4 * a.length);
+        return a;
+    }
+
+    private static String[] readStrings(ByteBuffer buf) {
+        int[] offsets = readInts(buf);
+        int n = offsets.length - 1;
+        checkOffsets(offsets, -1);
+        if (offsets[n] > buf.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] block = new byte[offsets[n]];
+        buf.get(block);
+        buf.position(buf.position() + (4 - block.length % 4) % 4);
+        String[] a = new String[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = new String(block, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+        }
+        return a;
+    }
+
+    /**
+     * offsets must start at 0, never decrease and end at end (or anywhere, if end is -1).
+     */
+    private static void checkOffsets(int[] offsets, int end) {
+        if (offsets.length == 0 || offsets[0] != 0) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            if (offsets[i] < offsets[i - 1]) {
+                throw new java.lang.IllegalArgumentException();
+            }
+        }
+        if (end != -1 && offsets[offsets.length - 1] != end) {
+            throw new java.lang.IllegalArgumentException();
+        }
+    }
+
+    /**
+     * every id must be a vertex of a graph with nV vertices.
+     */
+    private static void checkIds(int[] ids, int nV) {
+        for (int id : ids) {
+            if (id < 0 || id >= nV) {
+                throw new java.lang.IllegalArgumentException();
+            }
+        }
+    }
+}
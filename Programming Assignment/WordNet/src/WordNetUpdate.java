@@ -0,0 +1,94 @@
+/**
+ * @author wen
+ * data: 2026/10/18
+ */
+
+import java.util.Arrays;
+
+/**
+ * A batch of new synsets and hypernym edges for one WordNet.
+ * Nothing is visible to queries until commit, which checks the batch, builds
+ * the new taxonomy once and publishes it atomically; a rejected batch leaves
+ * the WordNet unchanged.
+ */
+public class WordNetUpdate {
+    private final WordNet wordnet;
+    // number of synsets when the update began; new ids are assigned from here
+    private final int baseV;
+    private String[] added = new String[4];
+    private int nAdded;
+    private int[] from = new int[16];
+    private int[] to = new int[16];
+    private int nE;
+    private boolean committed;
+
+    WordNetUpdate(WordNet wordnet, int baseV) {
+        this.wordnet = wordnet;
+        this.baseV = baseV;
+    }
+
+    /**
+     * add a synset of space-separated nouns under at least one hypernym; returns its id.
+     */
+    public int addSynset(String synset, int... hypernyms) {
+        if (synset == null || synset.trim().isEmpty() || synset.indexOf(',') != -1
+                || hypernyms == null || hypernyms.length == 0) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        checkOpen();
+        int id = baseV + nAdded;
+        for (int h : hypernyms) {
+            validateSynset(h);
+        }
+        if (nAdded == added.length) {
+            added = Arrays.copyOf(added, 2 * nAdded);
+        }
+        added[nAdded++] = synset;
+        for (int h : hypernyms) {
+            addEdge(id, h);
+        }
+        return id;
+    }
+
+    /**
+     * make hypernym a hypernym of synset.
+     */
+    public void addHypernym(int synset, int hypernym) {
+        checkOpen();
+        validateSynset(synset);
+        validateSynset(hypernym);
+        addEdge(synset, hypernym);
+    }
+
+    /**
+     * apply the batch. Throws IllegalArgumentException if an edge would create a cycle,
+     * and IllegalStateException if another update was committed since this one began.
+     */
+    public void commit() {
+        checkOpen();
+        wordnet.apply(baseV, Arrays.copyOf(added, nAdded), from, to, nE);
+        committed = true;
+    }
+
+    private void checkOpen() {
+        if (committed) {
+            throw new IllegalStateException("update already committed");
+        }
+    }
+
+    private void addEdge(int v, int w) {
+        if (nE == from.length) {
+            from = Arrays.copyOf(from, 2 * nE);
+            to = Arrays.copyOf(to, 2 * nE);
+        }
+        from[nE] = v;
+        to[nE] = w;
+        nE++;
+    }
+
+    private void validateSynset(int id) {
+        if (id < 0 || id >= baseV + nAdded) {
+            throw new java.lang.IllegalArgumentException();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * @author wen
+ * data: 2026/10/18
+ */
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free pool of SAP workspaces.
+ * Callers take a workspace for one query and hand it back. A workspace made
+ * because the pool was empty is kept when it comes back: a full pool doubles
+ * its slot array, up to maxCapacity slots, so it follows the peak number of
+ * queries in flight and then stops allocating. Past maxCapacity, returned
+ * workspaces are dropped, which bounds the memory a burst of threads can pin
+ * for the life of the SAP. There are no monitors, so virtual threads never
+ * pin a carrier.
+ */
+class WorkspacePool {
+    private final AtomicReference<AtomicReferenceArray<SAPWorkspace>> slots;
+    private final int nV;
+    private final int maxCapacity;
+
+    WorkspacePool(int nV, int capacity, int maxCapacity) {
+        this.nV = nV;
+        this.maxCapacity = Math.max(capacity, maxCapacity);
+        this.slots = new AtomicReference<>(new AtomicReferenceArray<>(capacity));
+    }
+
+    /**
+     * an idle workspace, or a new one if every slot is empty.
+     */
+    SAPWorkspace acquire() {
+        AtomicReferenceArray<SAPWorkspace> array = slots.get();
+        int n = array.length();
+        int start = ThreadLocalRandom.current().nextInt(n);
+        for (int i = 0; i < n; i++) {
+            int slot = (start + i) % n;
+            SAPWorkspace ws = array.get(slot);
+            if (ws != null && array.compareAndSet(slot, ws, null)) {
+                return ws;
+            }
+        }
+        return new SAPWorkspace(nV);
+    }
+
+    /**
+     * Give a workspace back. If every slot is taken, a slot array twice the size,
+     * at most maxCapacity, replaces the current one and the workspaces idle in the
+     * old array move over; a pool already at maxCapacity drops the workspace.
+     */
+    void release(SAPWorkspace ws) {
+        while (true) {
+            AtomicReferenceArray<SAPWorkspace> array = slots.get();
+            int n = array.length();
+            int start = ThreadLocalRandom.current().nextInt(n);
+            for (int i = 0; i < n; i++) {
+                int slot = (start + i) % n;
+                if (array.get(slot) == null && array.compareAndSet(slot, null, ws)) {
+                    // the array may have been replaced meanwhile: if nobody has taken the
+                    // workspace out of it since, take it back and try the current array
+                    if (slots.get() == array || !array.compareAndSet(slot, ws, null)) {
+                        return;
+                    }
+                    break;
+                }
+            }
+            if (n >= maxCapacity) {
+                return;
+            }
+            if (slots.get() == array
+                    && slots.compareAndSet(array, new AtomicReferenceArray<>(Math.min(2 * n, maxCapacity)))) {
+                for (int slot = 0; slot < n; slot++) {
+                    SAPWorkspace idle = array.getAndSet(slot, null);
+                    if (idle != null) {
+                        release(idle);
+                    }
+                }
+            }
+        }
+    }
+}